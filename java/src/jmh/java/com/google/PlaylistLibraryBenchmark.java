@@ -0,0 +1,70 @@
+package com.google;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link PlaylistLibrary} lookups and membership changes. The
+ * library holds {@value #PLAYLISTS} playlists, the last of which is filled
+ * with {@value #PLAYLIST_LENGTH} videos (or the whole catalog, if smaller).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PlaylistLibraryBenchmark {
+
+  static final int PLAYLISTS = 1000;
+  static final int PLAYLIST_LENGTH = 1000;
+
+  @Param({"1000", "100000", "10000000"})
+  int size;
+
+  private VideoLibrary videoLibrary;
+  private PlaylistLibrary playlistLibrary;
+  private String playlist;
+  private Video outsider;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    videoLibrary = new VideoLibrary(SyntheticCatalog.of(size), null, OutputSink.NONE);
+    playlistLibrary = new PlaylistLibrary(videoLibrary, PlaylistLimits.NONE, OutputSink.NONE);
+    for (int i = 0; i < PLAYLISTS; i++) {
+      playlistLibrary.createPlayList("Playlist_" + i);
+    }
+
+    playlist = "playlist_" + (PLAYLISTS - 1);
+    int length = Math.min(PLAYLIST_LENGTH, size - 1);
+    for (int i = 0; i < length; i++) {
+      playlistLibrary.addVideoToPlayList(playlist, videoLibrary.getVideo(SyntheticCatalog.videoId(i)));
+    }
+    outsider = videoLibrary.getVideo(SyntheticCatalog.videoId(size - 1));
+  }
+
+  /** Looks a playlist up by a differently cased name. */
+  @Benchmark
+  public VideoPlaylist getVideoPlayList() {
+    return playlistLibrary.getVideoPlayList(playlist);
+  }
+
+  /** Adds a video to the end of the full playlist and removes it again. */
+  @Benchmark
+  public boolean addAndRemoveVideo() {
+    return playlistLibrary.addVideoToPlayList(playlist, outsider)
+        & playlistLibrary.removeVideoFromPlayList(playlist, outsider);
+  }
+}
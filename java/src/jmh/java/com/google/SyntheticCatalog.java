@@ -0,0 +1,73 @@
+package com.google;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.SplittableRandom;
+
+/**
+ * A class used to generate videos.txt style catalogs for the benchmarks. The
+ * same size always produces the same catalog, so generated files are cached in
+ * the temp directory and shared between forks and runs.
+ */
+final class SyntheticCatalog {
+
+  static final String[] WORDS = {
+      "funny", "amazing", "cat", "dog", "life", "google", "video", "nothing",
+      "river", "sunset", "music", "guitar", "cooking", "pasta", "travel", "tokyo",
+      "football", "goal", "science", "rocket", "garden", "tomato", "coding", "java",
+      "winter", "snow", "ocean", "whale", "history", "castle", "review", "phone"};
+
+  static final int TAG_COUNT = 64;
+
+  private static final long SEED = 0x5EEDL;
+
+  private SyntheticCatalog() {
+  }
+
+  /** Returns a catalog of the given number of videos, generating it on first use. */
+  static Path of(int size) throws IOException {
+    Path file = Path.of(System.getProperty("java.io.tmpdir"), "videos-" + size + ".txt");
+    if (Files.exists(file)) {
+      return file;
+    }
+
+    Path temp = Files.createTempFile(file.getParent(), "videos-" + size, ".tmp");
+    SplittableRandom random = new SplittableRandom(SEED);
+    try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < size; i++) {
+        writer.write(title(random, i));
+        writer.write(" | ");
+        writer.write(videoId(i));
+        writer.write(" | ");
+        int tags = 1 + random.nextInt(3);
+        for (int t = 0; t < tags; t++) {
+          writer.write(t == 0 ? " " : " , ");
+          writer.write(tag(random.nextInt(TAG_COUNT)));
+        }
+        writer.write('\n');
+      }
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return file;
+  }
+
+  static String videoId(int i) {
+    return "video_" + i + "_id";
+  }
+
+  static String tag(int i) {
+    return "#tag" + i;
+  }
+
+  private static String title(SplittableRandom random, int i) {
+    return capitalize(WORDS[random.nextInt(WORDS.length)]) + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+  }
+
+  private static String capitalize(String word) {
+    return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+  }
+}
@@ -0,0 +1,83 @@
+package com.google;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the read and flag paths of a loaded {@link VideoLibrary}.
+ * The indexes are built during setup, so only steady-state lookups are
+ * measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class VideoLibraryBenchmark {
+
+  @Param({"1000", "100000", "10000000"})
+  int size;
+
+  private VideoLibrary videoLibrary;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    videoLibrary = new VideoLibrary(SyntheticCatalog.of(size), null, OutputSink.NONE);
+    videoLibrary.searchVideosByTitle("warm up");
+    videoLibrary.searchVideosByTag("#tag0");
+  }
+
+  /** Returns the id of another video on every call, so lookups don't hit one cache line. */
+  private String nextVideoId() {
+    next = (next + 7919) % size;
+    return SyntheticCatalog.videoId(next);
+  }
+
+  @Benchmark
+  public Video getVideo() {
+    return videoLibrary.getVideo(nextVideoId());
+  }
+
+  /** A two-word phrase, matching roughly one title in a thousand. */
+  @Benchmark
+  public List<Video> searchVideosByTitle() {
+    return videoLibrary.searchVideosByTitle("sunset whale");
+  }
+
+  /** A single tag, carried by roughly one video in thirty. */
+  @Benchmark
+  public List<Video> searchVideosByTag() {
+    return videoLibrary.searchVideosByTag("#tag7");
+  }
+
+  @Benchmark
+  public List<Video> searchVideosByTags() {
+    return videoLibrary.searchVideosByTags(List.of("#tag7", "OR", "#tag8", "NOT", "#tag9"));
+  }
+
+  @Benchmark
+  public Video getRandomVideo() {
+    return videoLibrary.getRandomVideo();
+  }
+
+  @Benchmark
+  public boolean flagAndAllowVideo() {
+    String videoId = nextVideoId();
+    return videoLibrary.flagVideo(videoId, "benchmark") & videoLibrary.allowVideo(videoId);
+  }
+}
@@ -0,0 +1,62 @@
+package com.google;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for constructing a {@link VideoLibrary}, both by parsing the text
+ * catalog and by mapping a snapshot of it. Every invocation is a cold start,
+ * so each is timed on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class VideoLibraryLoadBenchmark {
+
+  @Param({"1000", "100000", "10000000"})
+  int size;
+
+  private Path catalog;
+  private Path snapshot;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    catalog = SyntheticCatalog.of(size);
+    snapshot = Files.createTempFile("videos-" + size, ".snapshot");
+    Files.delete(snapshot);
+    new VideoLibrary(catalog, snapshot, OutputSink.NONE);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(snapshot);
+  }
+
+  @Benchmark
+  public VideoLibrary parseCatalog() {
+    return new VideoLibrary(catalog, null, OutputSink.NONE);
+  }
+
+  @Benchmark
+  public VideoLibrary mapSnapshot() {
+    return new VideoLibrary(catalog, snapshot, OutputSink.NONE);
+  }
+}
@@ -0,0 +1,72 @@
+package com.google;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for listing the whole catalog with SHOW_ALL_VIDEOS, written to
+ * each kind of {@link OutputSink}. The streams discard what they are given,
+ * so only the cost of producing and writing the output is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class VideoPlayerBenchmark {
+
+  @Param({"1000", "100000"})
+  int size;
+
+  private VideoPlayer unbuffered;
+  private VideoPlayer buffered;
+  private VideoPlayer discarded;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    VideoLibrary videoLibrary = new VideoLibrary(SyntheticCatalog.of(size), null, OutputSink.NONE);
+    PrintStream stream = new PrintStream(OutputStream.nullOutputStream());
+    unbuffered = player(videoLibrary, stream::println);
+    buffered = player(videoLibrary, new OutputSink.Buffered(stream));
+    discarded = player(videoLibrary, OutputSink.NONE);
+    discarded.showAllVideos();
+  }
+
+  private static VideoPlayer player(VideoLibrary videoLibrary, OutputSink out) {
+    return new VideoPlayer(videoLibrary, new PlaylistLibrary(videoLibrary, PlaylistLimits.NONE, out), out);
+  }
+
+  /** A write to the stream per line, as printing to System.out does. */
+  @Benchmark
+  public void showAllVideosUnbuffered() {
+    unbuffered.showAllVideos();
+    unbuffered.flush();
+  }
+
+  @Benchmark
+  public void showAllVideosBuffered() {
+    buffered.showAllVideos();
+    buffered.flush();
+  }
+
+  @Benchmark
+  public void showAllVideosDiscarded() {
+    discarded.showAllVideos();
+    discarded.flush();
+  }
+}
@@ -0,0 +1,72 @@
+package com.google;
+
+import java.util.BitSet;
+
+/**
+ * A class used to describe how a freshly parsed catalog differs from the live
+ * one: rows of the fresh catalog that are new or changed, and live ordinals
+ * whose id no longer appears.
+ */
+class CatalogDelta {
+
+  private final VideoCatalog fresh;
+  private final BitSet addedRows = new BitSet();
+  private final BitSet changedRows = new BitSet();
+  private final BitSet removedOrdinals = new BitSet();
+
+  private CatalogDelta(VideoCatalog fresh) {
+    this.fresh = fresh;
+  }
+
+  /** Computes the delta; the caller must hold the live catalog's read lock. */
+  static CatalogDelta between(VideoCatalog live, VideoCatalog fresh) {
+    CatalogDelta delta = new CatalogDelta(fresh);
+    BitSet seen = new BitSet(live.size());
+    for (int row = 0; row < fresh.size(); row++) {
+      int ordinal = live.ordinalOf(fresh.videoId(row));
+      if (ordinal < 0) {
+        delta.addedRows.set(row);
+      } else {
+        seen.set(ordinal);
+        if (!live.sameRow(ordinal, fresh, row)) {
+          delta.changedRows.set(row);
+        }
+      }
+    }
+
+    delta.removedOrdinals.set(0, live.size());
+    delta.removedOrdinals.andNot(seen);
+    delta.removedOrdinals.andNot(live.removed());
+    return delta;
+  }
+
+  /** Returns the parsed catalog the added and changed rows refer to. */
+  VideoCatalog fresh() {
+    return fresh;
+  }
+
+  /** Returns the rows of the fresh catalog whose id is not in the live catalog. */
+  BitSet addedRows() {
+    return addedRows;
+  }
+
+  /** Returns the rows of the fresh catalog whose title or tags differ from the live video. */
+  BitSet changedRows() {
+    return changedRows;
+  }
+
+  /** Returns the live ordinals whose id is missing from the fresh catalog. */
+  BitSet removedOrdinals() {
+    return removedOrdinals;
+  }
+
+  boolean isEmpty() {
+    return addedRows.isEmpty() && changedRows.isEmpty() && removedOrdinals.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d added, %d changed, %d removed",
+        addedRows.cardinality(), changedRows.cardinality(), removedOrdinals.cardinality());
+  }
+}
@@ -0,0 +1,267 @@
+package com.google;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A class used to read a videos.txt catalog. The file is memory-mapped and
+ * every "title | id | tags" record is parsed straight from the mapped bytes,
+ * without regexes or intermediate split arrays.
+ */
+class CatalogLoader {
+
+  /** Largest region mapped at once; bigger files are walked region by region. */
+  private static final long MAX_REGION = 1L << 30;
+
+  /** Smallest chunk handed to a worker by {@link #loadParallel}. */
+  private static final long MIN_CHUNK = 1L << 22;
+
+  /** Receives every record parsed from the catalog, in file order. */
+  interface RecordSink {
+    void accept(String title, String videoId, List<String> tags);
+  }
+
+  /** Throughput figures of a single load. */
+  static final class Stats {
+    private final long lines;
+    private final long bytes;
+    private final long nanos;
+
+    Stats(long lines, long bytes, long nanos) {
+      this.lines = lines;
+      this.bytes = bytes;
+      this.nanos = nanos;
+    }
+
+    /** Returns the number of records read. */
+    long getLines() {
+      return lines;
+    }
+
+    /** Returns the size of the catalog in bytes. */
+    long getBytes() {
+      return bytes;
+    }
+
+    /** Returns the wall-clock time the load took, in nanoseconds. */
+    long getNanos() {
+      return nanos;
+    }
+
+    /** Returns the load throughput in lines per second. */
+    double getLinesPerSecond() {
+      return nanos == 0 ? 0 : lines * 1_000_000_000d / nanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Loaded %d videos in %.1f ms (%.0f lines/sec)",
+          lines, nanos / 1_000_000d, getLinesPerSecond());
+    }
+  }
+
+  private byte[] scratch = new byte[256];
+  private long lines;
+  private VideoCatalog partial;
+
+  private CatalogLoader() {
+  }
+
+  /**
+   * Parses the catalog at the given path, handing every record to the sink.
+   * Blank lines and lines without an id are skipped.
+   */
+  static Stats load(Path path, RecordSink sink) throws IOException {
+    long start = System.nanoTime();
+    CatalogLoader loader = new CatalogLoader();
+    long size;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      size = channel.size();
+      long position = 0;
+      while (position < size) {
+        long length = Math.min(size - position, MAX_REGION);
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        boolean last = position + length == size;
+        int consumed = loader.parseRegion(region, (int) length, last, sink);
+        if (consumed == 0) {
+          throw new IOException("Catalog line longer than " + MAX_REGION + " bytes");
+        }
+        position += consumed;
+      }
+    }
+    return new Stats(loader.lines, size, System.nanoTime() - start);
+  }
+
+  /**
+   * Parses the catalog at the given path on the pool and adds every record to
+   * the catalog. The file is split into newline-aligned chunks that are parsed
+   * into partial catalogs concurrently, then merged in file order, so ordinals
+   * and duplicate ids resolve exactly as with a sequential load.
+   */
+  static Stats loadParallel(Path path, VideoCatalog catalog, ForkJoinPool pool) throws IOException {
+    long start = System.nanoTime();
+    long lines = 0;
+    long size;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      size = channel.size();
+      long chunkSize = Math.min(MAX_REGION,
+          Math.max(MIN_CHUNK, size / (4L * pool.getParallelism())));
+
+      List<Future<CatalogLoader>> chunks = new ArrayList<>();
+      long chunkStart = 0;
+      while (chunkStart < size) {
+        long chunkEnd = nextLineStart(channel, Math.min(size, chunkStart + chunkSize), size);
+        long from = chunkStart;
+        chunks.add(pool.submit(() -> parseChunk(channel, from, chunkEnd - from)));
+        chunkStart = chunkEnd;
+      }
+
+      for (Future<CatalogLoader> chunk : chunks) {
+        CatalogLoader loader = join(chunk);
+        catalog.addAll(loader.partial);
+        lines += loader.lines;
+      }
+    }
+    return new Stats(lines, size, System.nanoTime() - start);
+  }
+
+  private static CatalogLoader parseChunk(FileChannel channel, long position, long length) throws IOException {
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Catalog line longer than " + MAX_REGION + " bytes");
+    }
+    CatalogLoader loader = new CatalogLoader();
+    loader.partial = new VideoCatalog();
+    MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    loader.parseRegion(region, (int) length, true, loader.partial::add);
+    return loader;
+  }
+
+  private static CatalogLoader join(Future<CatalogLoader> chunk) throws IOException {
+    try {
+      return chunk.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while loading the catalog");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /** Returns the position just after the first newline at or after the given one, or the size. */
+  private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    while (position < size) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  /**
+   * Parses all complete lines of the region and returns how many bytes were
+   * consumed. A trailing partial line is left for the next region, unless
+   * this is the last region of the file.
+   */
+  private int parseRegion(MappedByteBuffer region, int length, boolean last, RecordSink sink) {
+    int lineStart = 0;
+    for (int i = 0; i < length; i++) {
+      if (region.get(i) == '\n') {
+        parseLine(region, lineStart, i, sink);
+        lineStart = i + 1;
+      }
+    }
+    if (last && lineStart < length) {
+      parseLine(region, lineStart, length, sink);
+      lineStart = length;
+    }
+    return lineStart;
+  }
+
+  private void parseLine(MappedByteBuffer buffer, int from, int to, RecordSink sink) {
+    if (to > from && buffer.get(to - 1) == '\r') {
+      to--;
+    }
+
+    int titleEnd = indexOf(buffer, (byte) '|', from, to);
+    if (titleEnd == to) {
+      return;
+    }
+    int idEnd = indexOf(buffer, (byte) '|', titleEnd + 1, to);
+    String id = decode(buffer, titleEnd + 1, idEnd);
+    if (id.isEmpty()) {
+      return;
+    }
+    String title = decode(buffer, from, titleEnd);
+
+    List<String> tags = new ArrayList<>();
+    if (idEnd < to) {
+      int tagsEnd = indexOf(buffer, (byte) '|', idEnd + 1, to);
+      int tagStart = idEnd + 1;
+      while (tagStart <= tagsEnd) {
+        int tagEnd = indexOf(buffer, (byte) ',', tagStart, tagsEnd);
+        String tag = decode(buffer, tagStart, tagEnd);
+        if (!tag.isEmpty()) {
+          tags.add(tag);
+        }
+        tagStart = tagEnd + 1;
+      }
+    }
+
+    lines++;
+    sink.accept(title, id, tags);
+  }
+
+  private static int indexOf(MappedByteBuffer buffer, byte value, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buffer.get(i) == value) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f' || b == 0x0B;
+  }
+
+  /** Decodes the given byte range as UTF-8, stripping surrounding whitespace. */
+  private String decode(MappedByteBuffer buffer, int from, int to) {
+    while (from < to && isWhitespace(buffer.get(from))) {
+      from++;
+    }
+    while (to > from && isWhitespace(buffer.get(to - 1))) {
+      to--;
+    }
+    int length = to - from;
+    if (length > scratch.length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    for (int i = 0; i < length; i++) {
+      scratch[i] = buffer.get(from + i);
+    }
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+}
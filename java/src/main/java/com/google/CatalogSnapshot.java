@@ -0,0 +1,98 @@
+package com.google;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A class used to save a {@link VideoCatalog} as a binary snapshot and map it
+ * back on start. The header records the size and modification time of the
+ * videos.txt the snapshot was built from, plus a CRC32 of the payload; a
+ * snapshot that is stale or corrupt is ignored so callers fall back to text.
+ *
+ * <pre>
+ * int  magic "YTCS"
+ * int  version
+ * long source size
+ * long source last-modified millis
+ * int  payload CRC32
+ * ...  payload, see VideoCatalog.writeTo
+ * </pre>
+ */
+class CatalogSnapshot {
+
+  static final int MAGIC = 0x59544353;
+  static final int VERSION = 2;
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+
+  private CatalogSnapshot() {
+  }
+
+  /**
+   * Reads the snapshot if it exists, is intact and matches the current state of the source
+   * catalog. Returns null otherwise.
+   */
+  static VideoCatalog read(Path snapshot, Path source) throws IOException {
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+        return null;
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+          || buffer.getLong() != Files.size(source)
+          || buffer.getLong() != Files.getLastModifiedTime(source).toMillis()) {
+        return null;
+      }
+      int checksum = buffer.getInt();
+      ByteBuffer payload = buffer.slice();
+      if (checksum != checksum(payload.duplicate())) {
+        return null;
+      }
+      return VideoCatalog.readFrom(payload);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /** Writes a snapshot of the catalog, replacing any previous snapshot atomically. */
+  static void write(Path snapshot, Path source, VideoCatalog catalog) throws IOException {
+    long payloadSize = catalog.serializedSize();
+    if (HEADER_SIZE + payloadSize > Integer.MAX_VALUE) {
+      throw new IOException("Catalog too large for a snapshot: " + payloadSize + " bytes");
+    }
+
+    Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + payloadSize);
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      buffer.putLong(Files.size(source));
+      buffer.putLong(Files.getLastModifiedTime(source).toMillis());
+      int checksumPosition = buffer.position();
+      buffer.putInt(0);
+
+      ByteBuffer payload = buffer.slice();
+      catalog.writeTo(payload);
+      payload.flip();
+      buffer.putInt(checksumPosition, checksum(payload));
+      buffer.force();
+    }
+    Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static int checksum(ByteBuffer payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+}
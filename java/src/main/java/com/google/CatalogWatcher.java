@@ -0,0 +1,80 @@
+package com.google;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class used to watch a catalog file and trigger a reload whenever it is
+ * created or modified. Bursts of events, such as an editor writing a file in
+ * several steps, are collapsed into one reload.
+ */
+class CatalogWatcher implements AutoCloseable {
+
+  /** How long the file must stay quiet before a reload starts. */
+  private static final long QUIET_PERIOD_MILLIS = 200;
+
+  private final WatchService watchService;
+  private final Thread thread;
+
+  private CatalogWatcher(WatchService watchService, Path file, Callable<?> reload) {
+    this.watchService = watchService;
+    this.thread = new Thread(() -> watch(file.getFileName(), reload), "catalog-watcher");
+    this.thread.setDaemon(true);
+  }
+
+  /** Starts watching the file on a daemon thread, calling reload after every change. */
+  static CatalogWatcher start(Path file, Callable<?> reload) throws IOException {
+    Path absolute = file.toAbsolutePath();
+    WatchService watchService = FileSystems.getDefault().newWatchService();
+    absolute.getParent().register(watchService,
+        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    CatalogWatcher watcher = new CatalogWatcher(watchService, absolute, reload);
+    watcher.thread.start();
+    return watcher;
+  }
+
+  private void watch(Path fileName, Callable<?> reload) {
+    try {
+      while (true) {
+        boolean changed = drain(watchService.take(), fileName);
+        // keep draining until the file has been quiet for a while
+        WatchKey key;
+        while ((key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          changed |= drain(key, fileName);
+        }
+        if (changed) {
+          try {
+            reload.call();
+          } catch (Exception e) {
+            System.err.println("Couldn't reload videos catalog: " + e.getMessage());
+          }
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // closed
+    }
+  }
+
+  private static boolean drain(WatchKey key, Path fileName) {
+    boolean changed = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+    }
+    key.reset();
+    return changed;
+  }
+
+  /** Stops watching. A reload that is already running completes. */
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+}
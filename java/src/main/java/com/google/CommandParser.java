@@ -1,41 +1,81 @@
 package com.google;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A class used to parse and execute a user Command.
  */
 class CommandParser {
 
+  /**
+   * Commands that list their results a page at a time when given PAGE options, and the number of
+   * arguments each needs before them.
+   */
+  private static final Map<String, Integer> PAGED_COMMANDS = Map.of(
+      "SHOW_ALL_VIDEOS", 0, "SHOW_PLAYLIST", 1, "SEARCH_VIDEOS", 1, "SEARCH_VIDEOS_WITH_TAG", 1);
+
   private final VideoPlayer videoPlayer;
+  private final OutputSink out;
 
   CommandParser(VideoPlayer videoPlayer) {
     this.videoPlayer = videoPlayer;
+    this.out = videoPlayer.getOutput();
   }
 
   /**
-   * Executes the given user command.
+   * Executes the given user command, and writes out its output once it is done.
    */
   public void executeCommand(List<String> command) {
+    try {
+      this.execute(command);
+    } finally {
+      this.videoPlayer.flush();
+    }
+  }
+
+  private void execute(List<String> command) {
     if (command.isEmpty()) {
-      System.out.println(
+      this.out.println(
           "Please enter a valid command, " +
               "type HELP for a list of available commands.");
       return;
     }
 
-    switch (command.get(0).toUpperCase()) {
+    String name = command.get(0).toUpperCase();
+    Page page = Page.ALL;
+    if (PAGED_COMMANDS.containsKey(name)) {
+      int options = Page.optionsStart(command, PAGED_COMMANDS.get(name));
+      page = Page.parse(command.subList(options, command.size()));
+      if (page == null) {
+        this.out.println(
+            "Please enter PAGE followed by a positive page size, "
+                + "and optionally AFTER and the cursor of the page.");
+        return;
+      }
+      // copied into an array backed list so missing arguments are still reported below
+      command = Arrays.asList(command.subList(0, options).toArray(new String[0]));
+    }
+
+    switch (name) {
       case "NUMBER_OF_VIDEOS":
         this.videoPlayer.numberOfVideos();
         break;
       case "SHOW_ALL_VIDEOS":
-        this.videoPlayer.showAllVideos();
+        this.videoPlayer.showAllVideos(page);
         break;
       case "PLAY":
         try {
           this.videoPlayer.playVideo(command.get(1));
         } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println("Please enter PLAY command followed by video_id.");
+          this.out.println("Please enter PLAY command followed by video_id.");
         }
         break;
       case "PLAY_RANDOM":
@@ -53,11 +93,17 @@ class CommandParser {
       case "SHOW_PLAYING":
         this.videoPlayer.showPlaying();
         break;
+      case "RECENTLY_PLAYED":
+        this.videoPlayer.showRecentlyPlayed();
+        break;
+      case "HISTORY":
+        this.videoPlayer.showHistory();
+        break;
       case "CREATE_PLAYLIST":
         try {
           this.videoPlayer.createPlaylist(command.get(1));
         } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
+          this.out.println(
               "Please enter CREATE_PLAYLIST command followed by a " +
                   "playlist name.");
         }
@@ -66,7 +112,7 @@ class CommandParser {
         try {
           this.videoPlayer.addVideoToPlaylist(command.get(1), command.get(2));
         } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
+          this.out.println(
               "Please enter ADD_TO_PLAYLIST command followed by a "
                   + "playlist name and video_id to add.");
         }
@@ -75,16 +121,40 @@ class CommandParser {
         try {
           this.videoPlayer.removeFromPlaylist(command.get(1), command.get(2));
         } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
+          this.out.println(
               "Please enter REMOVE_FROM_PLAYLIST command followed by a "
                   + "playlist name and video_id to remove.");
         }
         break;
+      case "BULK_ADD_TO_PLAYLIST":
+        if (command.size() > 2) {
+          List<String> videoIds = this.videoIds(command.subList(2, command.size()));
+          if (videoIds != null) {
+            this.videoPlayer.addVideosToPlaylist(command.get(1), videoIds);
+          }
+        } else {
+          this.out.println(
+              "Please enter BULK_ADD_TO_PLAYLIST command followed by a "
+                  + "playlist name and the video_ids (or @file of video_ids) to add.");
+        }
+        break;
+      case "BULK_REMOVE_FROM_PLAYLIST":
+        if (command.size() > 2) {
+          List<String> videoIds = this.videoIds(command.subList(2, command.size()));
+          if (videoIds != null) {
+            this.videoPlayer.removeVideosFromPlaylist(command.get(1), videoIds);
+          }
+        } else {
+          this.out.println(
+              "Please enter BULK_REMOVE_FROM_PLAYLIST command followed by a "
+                  + "playlist name and the video_ids (or @file of video_ids) to remove.");
+        }
+        break;
       case "CLEAR_PLAYLIST":
         try {
           this.videoPlayer.clearPlaylist(command.get(1));
         } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
+          this.out.println(
               "Please enter CLEAR_PLAYLIST command followed by a "
                   + "playlist name.");
         }
@@ -93,35 +163,46 @@ class CommandParser {
         try {
           this.videoPlayer.deletePlaylist(command.get(1));
         } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
+          this.out.println(
               "Please enter DELETE_PLAYLIST command followed by a " +
                   "playlist name.");
         }
         break;
       case "SHOW_PLAYLIST":
         try {
-          this.videoPlayer.showPlaylist(command.get(1));
+          this.videoPlayer.showPlaylist(command.get(1), page);
         } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println("Please enter SHOW_PLAYLIST command followed by a " +
+          this.out.println("Please enter SHOW_PLAYLIST command followed by a " +
               "playlist name.");
         }
         break;
       case "SHOW_ALL_PLAYLISTS":
         this.videoPlayer.showAllPlaylists();
         break;
+      case "SHOW_PLAYLISTS_CONTAINING":
+        try {
+          this.videoPlayer.showPlaylistsContaining(command.get(1));
+        } catch (ArrayIndexOutOfBoundsException e) {
+          this.out.println("Please enter SHOW_PLAYLISTS_CONTAINING command followed by a " +
+              "video_id.");
+        }
+        break;
+      case "PLAYLIST_STATS":
+        this.videoPlayer.showPlaylistStats();
+        break;
       case "SEARCH_VIDEOS":
         try {
-          this.videoPlayer.searchVideos(command.get(1));
+          this.videoPlayer.searchVideos(command.get(1), page);
         } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println("Please enter SEARCH_VIDEOS command followed by a " +
+          this.out.println("Please enter SEARCH_VIDEOS command followed by a " +
               "search term.");
         }
         break;
       case "SEARCH_VIDEOS_WITH_TAG":
-        try {
-          this.videoPlayer.searchVideosWithTag(command.get(1));
-        } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println(
+        if (command.size() > 1) {
+          this.videoPlayer.searchVideosWithTag(command.subList(1, command.size()), page);
+        } else {
+          this.out.println(
               "Please enter SEARCH_VIDEOS_WITH_TAG command followed by a " +
                   "video tag.");
         }
@@ -133,7 +214,7 @@ class CommandParser {
           try {
             this.videoPlayer.flagVideo(command.get(1));
           } catch (ArrayIndexOutOfBoundsException f) {
-            System.out.println("Please enter FLAG_VIDEO command followed by a" +
+            this.out.println("Please enter FLAG_VIDEO command followed by a" +
                 "video_id and an optional flag reason.");
           }
         }
@@ -142,7 +223,7 @@ class CommandParser {
         try {
           this.videoPlayer.allowVideo(command.get(1));
         } catch (ArrayIndexOutOfBoundsException e) {
-          System.out.println("Please enter ALLOW_VIDEO command followed by a " +
+          this.out.println("Please enter ALLOW_VIDEO command followed by a " +
               "video_id.");
         }
         break;
@@ -150,13 +231,31 @@ class CommandParser {
         this.getHelp();
         break;
       default:
-        System.out.println(
+        this.out.println(
             "Please enter a valid command, type HELP for a list of "
             + "available commands.");
         break;
     }
   }
 
+  /**
+   * Returns the video ids given to a bulk command: either the ids themselves, or a single @file
+   * naming a file with one id per line. Returns null if the file can't be read.
+   */
+  private List<String> videoIds(List<String> arguments) {
+    if (arguments.size() != 1 || !arguments.get(0).startsWith("@")) {
+      return arguments;
+    }
+
+    String file = arguments.get(0).substring(1);
+    try (Stream<String> lines = Files.lines(Path.of(file))) {
+      return lines.map(String::trim).filter(line -> !line.isEmpty()).collect(Collectors.toList());
+    } catch (IOException | UncheckedIOException e) {
+      this.out.println(String.format("Cannot read video ids from %s", file));
+      return null;
+    }
+  }
+
   /**
    * Displays all available commands to the user.
    */
@@ -171,19 +270,28 @@ class CommandParser {
             + "    PAUSE - Pause the current video.\n"
             + "    CONTINUE - Resume the current paused video.\n"
             + "    SHOW_PLAYING - Displays the title, url and paused status of the video that is currently playing (or paused).\n"
+            + "    RECENTLY_PLAYED - Lists the videos played lately, most recent first.\n"
+            + "    HISTORY - Lists the last videos played, stopped, paused and continued, most recent first.\n"
             + "    CREATE_PLAYLIST <playlist_name> - Creates a new (empty) playlist with the provided name.\n"
             + "    ADD_TO_PLAYLIST <playlist_name> <video_id> - Adds the requested video to the playlist.\n"
             + "    REMOVE_FROM_PLAYLIST <playlist_name> <video_id> - Removes the specified video from the specified playlist\n"
+            + "    BULK_ADD_TO_PLAYLIST <playlist_name> <video_id>... - Adds many videos to the playlist; a single @<file> reads the video_ids from a file.\n"
+            + "    BULK_REMOVE_FROM_PLAYLIST <playlist_name> <video_id>... - Removes many videos from the playlist; a single @<file> reads the video_ids from a file.\n"
             + "    CLEAR_PLAYLIST <playlist_name> - Removes all the videos from the playlist.\n"
             + "    DELETE_PLAYLIST <playlist_name> - Deletes the playlist.\n"
             + "    SHOW_PLAYLIST <playlist_name> - List all the videos in this playlist.\n"
             + "    SHOW_ALL_PLAYLISTS - Display all the available playlists.\n"
+            + "    SHOW_PLAYLISTS_CONTAINING <video_id> - Display all the playlists the video is in.\n"
+            + "    PLAYLIST_STATS - Display how many playlists and videos you and everyone have, and the limits.\n"
             + "    SEARCH_VIDEOS <search_term> - Display all the videos whose titles contain the search_term.\n"
             + "    SEARCH_VIDEOS_WITH_TAG <tag_name> -Display all videos whose tags contains the provided tag.\n"
+            + "        Several tags may be combined with AND, OR and NOT, e.g. #cat AND #animal NOT #dog.\n"
+            + "    SHOW_ALL_VIDEOS, SHOW_PLAYLIST and the SEARCH commands may end with PAGE <size> [AFTER <cursor>]\n"
+            + "        to list at most size results, starting after the cursor printed at the end of the previous page.\n"
             + "    FLAG_VIDEO <video_id> <flag_reason> - Mark a video as flagged.\n"
             + "    ALLOW_VIDEO <video_id> - Removes a flag from a video.\n"
             + "    HELP - Displays help.\n"
             + "    EXIT - Terminates the program execution.\n";
-    System.out.println(helpText);
+    this.out.println(helpText);
   }
 }
@@ -0,0 +1,72 @@
+package com.google;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A class used to keep the flag state of a catalog, keyed by video ordinal.
+ * Flags are bits in a bitset; reasons are interned once and referenced per
+ * ordinal by a small int, so flagging and allowing flip state in place.
+ */
+class FlagTable {
+
+  /** Reason id stored for videos flagged without a reason. */
+  private static final int NO_REASON = 0;
+
+  private final BitSet flagged = new BitSet();
+  private int[] reasonIds = new int[16];
+  private final List<String> reasons = new ArrayList<>(List.of(""));
+  private final HashMap<String, Integer> reasonDictionary = new HashMap<>();
+
+  boolean isFlagged(int ordinal) {
+    return flagged.get(ordinal);
+  }
+
+  /** Returns the reason the video was flagged for, or null if it is not flagged or has no reason. */
+  String reason(int ordinal) {
+    if (!flagged.get(ordinal) || ordinal >= reasonIds.length || reasonIds[ordinal] == NO_REASON) {
+      return null;
+    }
+    return reasons.get(reasonIds[ordinal]);
+  }
+
+  void flag(int ordinal, String reason) {
+    if (ordinal >= reasonIds.length) {
+      reasonIds = Arrays.copyOf(reasonIds, Math.max(ordinal + 1, reasonIds.length * 2));
+    }
+    reasonIds[ordinal] = reason == null ? NO_REASON : internReason(reason);
+    flagged.set(ordinal);
+  }
+
+  void allow(int ordinal) {
+    flagged.clear(ordinal);
+  }
+
+  /** Returns the number of flagged videos. */
+  int count() {
+    return flagged.cardinality();
+  }
+
+  /** Returns the next ordinal at or after the given one that is not flagged. */
+  int nextUnflagged(int ordinal) {
+    return flagged.nextClearBit(ordinal);
+  }
+
+  /** Removes every flagged video from the given set of ordinals. */
+  void excludeFrom(BitSet ordinals) {
+    ordinals.andNot(flagged);
+  }
+
+  private int internReason(String reason) {
+    Integer id = reasonDictionary.get(reason);
+    if (id == null) {
+      id = reasons.size();
+      reasons.add(reason);
+      reasonDictionary.put(reason, id);
+    }
+    return id;
+  }
+}
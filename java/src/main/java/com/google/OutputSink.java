@@ -0,0 +1,104 @@
+package com.google;
+
+import java.io.PrintStream;
+import java.util.function.Consumer;
+
+/**
+ * A class used to take the output of commands. {@link VideoPlayer} and the
+ * libraries write to a sink rather than to System.out, so where the output
+ * goes, and what it costs, is up to whoever creates them: the console, a
+ * buffer written once per command, nowhere, or a consumer of result objects.
+ *
+ * <p>Sinks aren't thread-safe; every session writing at once needs its own.
+ */
+interface OutputSink {
+
+  /** Discards everything, for benchmarks. */
+  OutputSink NONE = line -> { };
+
+  /** Writes a line of output. */
+  void println(String line);
+
+  /**
+   * Writes one row of a listing, e.g. a video or a playlist, shown as the
+   * given line. Sinks that keep results rather than text get the object.
+   */
+  default void result(Object result, String line) {
+    println(line);
+  }
+
+  /** Ends the output of a command, writing out anything held back. */
+  default void flush() {
+  }
+
+  /**
+   * Returns a sink printing every line to System.out as it is written, as
+   * the player always did. System.out is looked up on every line, so a
+   * stream set later is used.
+   */
+  static OutputSink console() {
+    return line -> System.out.println(line);
+  }
+
+  /**
+   * A sink holding lines back until the command is done, so a listing is
+   * written to the stream in a few large writes rather than a synchronized
+   * write per line.
+   */
+  final class Buffered implements OutputSink {
+
+    // a listing larger than this is written out in parts, so the buffer stays small
+    static final int MAX_BUFFERED_CHARS = 64 * 1024;
+
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final PrintStream out;
+    private final StringBuilder buffer = new StringBuilder();
+
+    Buffered(PrintStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void println(String line) {
+      buffer.append(line).append(NEWLINE);
+      if (buffer.length() >= MAX_BUFFERED_CHARS) {
+        out.append(buffer);
+        buffer.setLength(0);
+      }
+    }
+
+    @Override
+    public void flush() {
+      if (buffer.length() > 0) {
+        out.append(buffer);
+        buffer.setLength(0);
+      }
+      out.flush();
+    }
+  }
+
+  /**
+   * A sink handing on objects rather than text: listed rows as the object
+   * they show, e.g. a {@link Video} or a {@link VideoPlaylist}, and every
+   * other line as its String.
+   */
+  final class Structured implements OutputSink {
+
+    private final Consumer<Object> results;
+
+    Structured(Consumer<Object> results) {
+      this.results = results;
+    }
+
+    @Override
+    public void println(String line) {
+      results.accept(line);
+    }
+
+    @Override
+    public void result(Object result, String line) {
+      results.accept(result);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.google;
+
+import java.util.List;
+
+/**
+ * A class used to represent the page of a listing a command asked for: at most size entries,
+ * starting after the entry named by the cursor. A listing that stops early prints the cursor of
+ * its next page.
+ */
+final class Page {
+
+  /** A page holding the whole listing. */
+  static final Page ALL = new Page(Integer.MAX_VALUE, null);
+
+  private final int size;
+  private final String after;
+
+  Page(int size, String after) {
+    this.size = size;
+    this.after = after;
+  }
+
+  /** Returns the largest number of entries on the page. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the id of the entry the page starts after, or null if it starts at the first. */
+  String after() {
+    return after;
+  }
+
+  /**
+   * Returns the index at which a command's arguments end and its page options, if any, begin:
+   * either "PAGE size" or "PAGE size AFTER cursor" at the end of the command. The end is only
+   * taken for options if the size is a number and the command keeps at least the given number of
+   * arguments before them, so e.g. "SEARCH_VIDEOS page 2" still searches for "page".
+   */
+  static int optionsStart(List<String> command, int arguments) {
+    int size = command.size();
+    if (size - 4 > arguments && command.get(size - 4).equalsIgnoreCase("PAGE")
+        && isNumber(command.get(size - 3)) && command.get(size - 2).equalsIgnoreCase("AFTER")) {
+      return size - 4;
+    }
+    if (size - 2 > arguments && command.get(size - 2).equalsIgnoreCase("PAGE")
+        && isNumber(command.get(size - 1))) {
+      return size - 2;
+    }
+    return size;
+  }
+
+  private static boolean isNumber(String value) {
+    try {
+      Integer.parseInt(value);
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Parses page options found by {@link #optionsStart}. Returns {@link #ALL} if there are none,
+   * or null if the page size is not a positive number.
+   */
+  static Page parse(List<String> options) {
+    if (options.isEmpty()) {
+      return ALL;
+    }
+    int size;
+    try {
+      size = Integer.parseInt(options.get(1));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    if (size <= 0) {
+      return null;
+    }
+    return new Page(size, options.size() == 4 ? options.get(3) : null);
+  }
+}
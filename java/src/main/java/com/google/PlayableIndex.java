@@ -0,0 +1,65 @@
+package com.google;
+
+import java.util.Arrays;
+
+/**
+ * A class used to keep the ordinals of the videos that can be played, i.e.
+ * that are neither flagged nor removed, packed into a dense array so one can
+ * be picked at random in O(1). Removing an ordinal moves the last one into
+ * its place, and a table of positions by ordinal finds that place.
+ */
+final class PlayableIndex {
+
+  private static final int ABSENT = -1;
+
+  private int[] ordinals = new int[16];
+  // the position of each ordinal in ordinals, or -1 if it isn't playable
+  private int[] positions = newPositions(16);
+  private int size;
+
+  int size() {
+    return size;
+  }
+
+  /** Returns the ordinal at a position, from 0 to size() - 1. */
+  int get(int position) {
+    return ordinals[position];
+  }
+
+  boolean contains(int ordinal) {
+    return ordinal < positions.length && positions[ordinal] != ABSENT;
+  }
+
+  void add(int ordinal) {
+    if (contains(ordinal)) {
+      return;
+    }
+    if (ordinal >= positions.length) {
+      int length = positions.length;
+      positions = Arrays.copyOf(positions, Math.max(ordinal + 1, length * 2));
+      Arrays.fill(positions, length, positions.length, ABSENT);
+    }
+    if (size == ordinals.length) {
+      ordinals = Arrays.copyOf(ordinals, size * 2);
+    }
+    ordinals[size] = ordinal;
+    positions[ordinal] = size++;
+  }
+
+  void remove(int ordinal) {
+    if (!contains(ordinal)) {
+      return;
+    }
+    int position = positions[ordinal];
+    int last = ordinals[--size];
+    ordinals[position] = last;
+    positions[last] = position;
+    positions[ordinal] = ABSENT;
+  }
+
+  private static int[] newPositions(int capacity) {
+    int[] positions = new int[capacity];
+    Arrays.fill(positions, ABSENT);
+    return positions;
+  }
+}
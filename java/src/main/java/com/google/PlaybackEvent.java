@@ -0,0 +1,69 @@
+package com.google;
+
+/**
+ * A class used to represent something a session's player did: played,
+ * stopped, paused or continued a video. Events are numbered in the order they
+ * were published to a {@link PlaybackEvents} stream.
+ */
+final class PlaybackEvent {
+
+  /** What the player did. */
+  enum Kind {
+    PLAYED("Played"),
+    STOPPED("Stopped"),
+    PAUSED("Paused"),
+    CONTINUED("Continued");
+
+    private final String verb;
+
+    Kind(String verb) {
+      this.verb = verb;
+    }
+
+    /** Returns how the event is shown, e.g. "Played". */
+    String verb() {
+      return verb;
+    }
+  }
+
+  private final long sequence;
+  private final long time;
+  private final String sessionId;
+  private final Kind kind;
+  private final String videoId;
+
+  PlaybackEvent(long sequence, long time, String sessionId, Kind kind, String videoId) {
+    this.sequence = sequence;
+    this.time = time;
+    this.sessionId = sessionId;
+    this.kind = kind;
+    this.videoId = videoId;
+  }
+
+  /** Returns the number of the event in its stream, counting from 0. */
+  long getSequence() {
+    return sequence;
+  }
+
+  /** Returns when the event happened, in milliseconds since the epoch. */
+  long getTime() {
+    return time;
+  }
+
+  String getSessionId() {
+    return sessionId;
+  }
+
+  Kind getKind() {
+    return kind;
+  }
+
+  String getVideoId() {
+    return videoId;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("#%d %s %s %s", sequence, sessionId, kind.verb(), videoId);
+  }
+}
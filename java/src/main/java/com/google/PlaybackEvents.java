@@ -0,0 +1,98 @@
+package com.google;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A class used to publish the playback events of every session to consumers
+ * such as analytics, which tail it at their own pace. The stream keeps the
+ * last {@code capacity} events in a ring; publishing takes a sequence number
+ * and swaps the event into its slot without locking, so players never wait
+ * for each other or for consumers. A consumer that falls more than the
+ * capacity behind skips the events it lost, and is told how many.
+ */
+final class PlaybackEvents {
+
+  /** How many events a stream keeps unless told otherwise. */
+  static final int DEFAULT_CAPACITY = 1 << 16;
+
+  private final AtomicReferenceArray<PlaybackEvent> slots;
+  private final int mask;
+  // the sequence number of the next event published
+  private final AtomicLong next = new AtomicLong();
+
+  /** Creates a stream keeping the given number of events, rounded up to a power of two. */
+  PlaybackEvents(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /** Publishes an event and returns it. */
+  PlaybackEvent publish(String sessionId, PlaybackEvent.Kind kind, String videoId) {
+    long sequence = next.getAndIncrement();
+    PlaybackEvent event = new PlaybackEvent(sequence, System.currentTimeMillis(), sessionId, kind, videoId);
+    int slot = (int) (sequence & mask);
+    PlaybackEvent current;
+    do {
+      current = slots.get(slot);
+      // a publisher a whole ring ahead already took the slot, so this event is one consumers lost
+      if (current != null && current.getSequence() > sequence) {
+        return event;
+      }
+    } while (!slots.compareAndSet(slot, current, event));
+    return event;
+  }
+
+  /** Returns the number of events published so far. */
+  long published() {
+    return next.get();
+  }
+
+  /** Returns a consumer of the events published from now on. */
+  Tail tail() {
+    return new Tail(next.get());
+  }
+
+  /**
+   * A consumer's place in the stream. A tail is read by one consumer at a
+   * time; every consumer takes its own.
+   */
+  final class Tail {
+
+    private long sequence;
+    private long missed;
+
+    private Tail(long sequence) {
+      this.sequence = sequence;
+    }
+
+    /**
+     * Returns the next event, or null if it hasn't been published yet. Events
+     * overwritten before they were read are skipped.
+     */
+    PlaybackEvent poll() {
+      while (true) {
+        PlaybackEvent event = slots.get((int) (sequence & mask));
+        if (event != null && event.getSequence() == sequence) {
+          sequence++;
+          return event;
+        }
+        long oldest = next.get() - slots.length();
+        if ((event == null || event.getSequence() < sequence) && sequence >= oldest) {
+          // taken but not yet swapped in
+          return null;
+        }
+        // overwritten, or about to be: skip to the oldest event the ring still holds
+        long skipTo = Math.max(sequence + 1, oldest);
+        missed += skipTo - sequence;
+        sequence = skipTo;
+      }
+    }
+
+    /** Returns how many events were skipped because they were overwritten before they were read. */
+    long missed() {
+      return missed;
+    }
+  }
+}
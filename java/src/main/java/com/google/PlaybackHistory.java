@@ -0,0 +1,72 @@
+package com.google;
+
+/**
+ * A class used to remember the last {@value #CAPACITY} playback events of one
+ * session, newest first, for the RECENTLY_PLAYED and HISTORY commands. Events
+ * are kept in fixed arrays used as a ring, so recording allocates nothing and
+ * the history takes the same memory however long the session lives. Each
+ * event is also published to the session's {@link PlaybackEvents}, if it has
+ * one.
+ *
+ * <p>A history is used by one session, whose commands run one at a time.
+ */
+final class PlaybackHistory {
+
+  /** How many events a session remembers. */
+  static final int CAPACITY = 32;
+
+  private static final PlaybackEvent.Kind[] KINDS = PlaybackEvent.Kind.values();
+
+  private final String sessionId;
+  // where events are also published, or null
+  private final PlaybackEvents events;
+  private final int[] ordinals = new int[CAPACITY];
+  private final byte[] kinds = new byte[CAPACITY];
+  private final long[] times = new long[CAPACITY];
+  // events recorded so far; the newest is at (count - 1) % CAPACITY
+  private long count;
+
+  PlaybackHistory(String sessionId, PlaybackEvents events) {
+    this.sessionId = sessionId;
+    this.events = events;
+  }
+
+  void record(PlaybackEvent.Kind kind, Video video) {
+    long time;
+    if (events != null) {
+      time = events.publish(sessionId, kind, video.getVideoId()).getTime();
+    } else {
+      time = System.currentTimeMillis();
+    }
+    int slot = (int) (count++ % CAPACITY);
+    ordinals[slot] = video.getOrdinal();
+    kinds[slot] = (byte) kind.ordinal();
+    times[slot] = time;
+  }
+
+  /** Returns the number of events remembered, at most {@value #CAPACITY}. */
+  int size() {
+    return (int) Math.min(count, CAPACITY);
+  }
+
+  /** Returns the ordinal of the video of an event, 0 being the newest. */
+  int ordinal(int back) {
+    return ordinals[slot(back)];
+  }
+
+  PlaybackEvent.Kind kind(int back) {
+    return KINDS[kinds[slot(back)]];
+  }
+
+  /** Returns when an event happened, in milliseconds since the epoch. */
+  long time(int back) {
+    return times[slot(back)];
+  }
+
+  private int slot(int back) {
+    if (back < 0 || back >= size()) {
+      throw new IndexOutOfBoundsException(String.valueOf(back));
+    }
+    return (int) ((count - 1 - back) % CAPACITY);
+  }
+}
@@ -0,0 +1,131 @@
+package com.google;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A class used to keep count of the playlists, entries and estimated heap use
+ * of each owner and of all owners together. Counts are kept as playlists
+ * change, so reading them costs nothing; a change checked against a limit
+ * reserves its share first, so concurrent changes can't overshoot it.
+ */
+final class PlaylistAccounting {
+
+  /*
+    estimates of the heap a playlist and an entry hold on to, with compressed oops: a playlist
+    is the VideoPlaylist, its slot table and the map entries for it, plus its title and key; an
+    entry is an int in the trie, a slot table entry at no less than half load, and its share of
+    the reverse index
+  */
+  static final long PLAYLIST_BYTES = 240;
+  static final long TITLE_CHAR_BYTES = 4;
+  static final long ENTRY_BYTES = 40;
+
+  /** The counts of one owner, or of all owners. */
+  static final class Usage {
+    private final AtomicInteger playlists = new AtomicInteger();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    int playlists() {
+      return playlists.get();
+    }
+
+    long entries() {
+      return entries.get();
+    }
+
+    /** Returns an estimate of the heap held by the playlists. */
+    long bytes() {
+      return bytes.get();
+    }
+  }
+
+  private final ConcurrentHashMap<String, Usage> owners = new ConcurrentHashMap<>();
+  private final Usage total = new Usage();
+
+  /** Returns the counts of an owner. */
+  Usage usage(String owner) {
+    return owners.computeIfAbsent(owner, k -> new Usage());
+  }
+
+  /** Returns the counts of all owners together. */
+  Usage total() {
+    return total;
+  }
+
+  /** Returns the number of owners that have playlists. */
+  int owners() {
+    int count = 0;
+    for (Usage usage : owners.values()) {
+      if (usage.playlists() > 0) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** Counts a new playlist if the owner has fewer than limit. Returns false if not. */
+  boolean reservePlaylist(String owner, String title, int limit) {
+    Usage usage = usage(owner);
+    int playlists;
+    do {
+      playlists = usage.playlists.get();
+      if (playlists >= limit) {
+        return false;
+      }
+    } while (!usage.playlists.compareAndSet(playlists, playlists + 1));
+    total.playlists.incrementAndGet();
+    addBytes(usage, playlistBytes(title));
+    return true;
+  }
+
+  void playlistCreated(String owner, String title) {
+    reservePlaylist(owner, title, Integer.MAX_VALUE);
+  }
+
+  /** Stops counting a playlist and the entries it held. */
+  void playlistDeleted(String owner, String title, int entries) {
+    Usage usage = usage(owner);
+    usage.playlists.decrementAndGet();
+    total.playlists.decrementAndGet();
+    entriesRemoved(owner, entries);
+    addBytes(usage, -playlistBytes(title));
+  }
+
+  /** Counts new entries if the owner's entries stay within limit. Returns false if not. */
+  boolean reserveEntries(String owner, int count, long limit) {
+    Usage usage = usage(owner);
+    long entries;
+    do {
+      entries = usage.entries.get();
+      if (entries + count > limit) {
+        return false;
+      }
+    } while (!usage.entries.compareAndSet(entries, entries + count));
+    total.entries.addAndGet(count);
+    addBytes(usage, count * ENTRY_BYTES);
+    return true;
+  }
+
+  void entriesAdded(String owner, int count) {
+    reserveEntries(owner, count, Long.MAX_VALUE);
+  }
+
+  void entriesRemoved(String owner, int count) {
+    Usage usage = usage(owner);
+    usage.entries.addAndGet(-count);
+    total.entries.addAndGet(-count);
+    addBytes(usage, -count * ENTRY_BYTES);
+  }
+
+  private void addBytes(Usage usage, long bytes) {
+    usage.bytes.addAndGet(bytes);
+    total.bytes.addAndGet(bytes);
+  }
+
+  private static long playlistBytes(String title) {
+    return PLAYLIST_BYTES + TITLE_CHAR_BYTES * title.length();
+  }
+}
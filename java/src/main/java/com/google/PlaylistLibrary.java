@@ -1,15 +1,172 @@
 package com.google;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
+/**
+ * A class used to keep the playlists of many owners. A library can be shared between threads: every owner's library
+ * returned by {@link #forOwner} works on the same playlists, reverse index and log. Playlists hold the ordinals the
+ * video library gave their videos; the log names videos by id, so it stays valid when the catalog changes.
+ */
 public class PlaylistLibrary {
-    private final HashMap<String, VideoPlaylist> videoPlayLists;
+    /** System property naming the log file {@link Run} keeps playlists in across restarts. */
+    static final String LOG_PROPERTY = "playlists.log";
 
-    public PlaylistLibrary() {
-        this.videoPlayLists = new HashMap<>();
+    /** How many video ids a bulk change names per kind of failure before summarising the rest. */
+    static final int SUMMARY_VIDEO_IDS = 10;
+
+    /** The owner of the playlists of a library that isn't shared between users. */
+    static final String DEFAULT_OWNER = "";
+
+    /*
+      playlists are sharded by owner and then keyed by the case-folded title, see key(); the playlist keeps its
+      display title. both levels are concurrent maps and each playlist is its own lock, so changes to different
+      playlists never wait for each other, and changes to one playlist are applied and logged one at a time. each
+      owner's shard also has its own reverse index, so owners don't share any state a change has to wait on
+    */
+    private final ConcurrentHashMap<String, Shard> owners;
+    private final ConcurrentHashMap<String, VideoPlaylist> videoPlayLists;
+    // this owner's reverse index, see Shard
+    private final ConcurrentHashMap<Integer, Set<VideoPlaylist>> videoPlayListsByVideo;
+    // held for reading by every change while it is applied and appended to the log, and for writing while a
+    // compaction snapshot is taken, so the snapshot matches the log. changes wait for the disk after letting go
+    private final ReentrantReadWriteLock changes;
+    // the log every change is written to, or null if the playlists only live in memory
+    private final PlaylistLog log;
+    private final VideoLibrary videoLibrary;
+    // counts of every owner's playlists, kept by the mutators below, and the limits changes are checked against
+    private final PlaylistAccounting accounting;
+    private final PlaylistLimits limits;
+    private final String owner;
+    // where the outcome of commands is written
+    private final OutputSink out;
+
+    public PlaylistLibrary(VideoLibrary videoLibrary) {
+        this(videoLibrary, PlaylistLimits.NONE);
+    }
+
+    PlaylistLibrary(VideoLibrary videoLibrary, PlaylistLimits limits) {
+        this(videoLibrary, limits, OutputSink.console());
+    }
+
+    PlaylistLibrary(VideoLibrary videoLibrary, PlaylistLimits limits, OutputSink out) {
+        this.videoLibrary = videoLibrary;
+        this.limits = limits;
+        this.accounting = new PlaylistAccounting();
+        this.owners = new ConcurrentHashMap<>();
+        this.changes = new ReentrantReadWriteLock();
+        this.log = null;
+        this.owner = DEFAULT_OWNER;
+        this.out = out;
+        this.videoPlayLists = this.shard(DEFAULT_OWNER).playlists;
+        this.videoPlayListsByVideo = this.shard(DEFAULT_OWNER).playlistsByVideo;
+    }
+
+    PlaylistLibrary(VideoLibrary videoLibrary, Path logFile) throws IOException {
+        this(videoLibrary, logFile, PlaylistLimits.NONE);
+    }
+
+    PlaylistLibrary(VideoLibrary videoLibrary, Path logFile, PlaylistLimits limits) throws IOException {
+        this(videoLibrary, logFile, limits, OutputSink.console());
+    }
+
+    /**
+     * Create a library that keeps its playlists in the given log file, starting from the playlists already in it. The
+     * limits only apply to later changes, whatever the log holds is kept.
+     */
+    PlaylistLibrary(VideoLibrary videoLibrary, Path logFile, PlaylistLimits limits, OutputSink out)
+            throws IOException {
+        this.videoLibrary = videoLibrary;
+        this.limits = limits;
+        this.accounting = new PlaylistAccounting();
+        this.owners = new ConcurrentHashMap<>();
+        this.changes = new ReentrantReadWriteLock();
+        this.owner = DEFAULT_OWNER;
+        this.out = out;
+        this.videoPlayLists = this.shard(DEFAULT_OWNER).playlists;
+        this.videoPlayListsByVideo = this.shard(DEFAULT_OWNER).playlistsByVideo;
+        this.log = PlaylistLog.open(logFile, new Replay());
+    }
+
+    private PlaylistLibrary(PlaylistLibrary shared, String owner, OutputSink out) {
+        this.owners = shared.owners;
+        this.changes = shared.changes;
+        this.log = shared.log;
+        this.videoLibrary = shared.videoLibrary;
+        this.accounting = shared.accounting;
+        this.limits = shared.limits;
+        this.owner = owner;
+        this.out = out;
+        this.videoPlayLists = this.shard(owner).playlists;
+        this.videoPlayListsByVideo = this.shard(owner).playlistsByVideo;
+    }
+
+    /**
+     * Get the library of another owner. It shares this library's state, so the two can be used from different
+     * threads at once.
+     */
+    PlaylistLibrary forOwner(String owner) {
+        return new PlaylistLibrary(this, owner, this.out);
+    }
+
+    /**
+     * Get the library of another owner that writes its messages to the given sink, for a session that keeps its
+     * output apart from other sessions'.
+     */
+    PlaylistLibrary forOwner(String owner, OutputSink out) {
+        return new PlaylistLibrary(this, owner, out);
+    }
+
+    /**
+     * Get the sink this library writes its messages to.
+     */
+    OutputSink getOutput() {
+        return this.out;
+    }
+
+    String getOwner() {
+        return this.owner;
+    }
+
+    private Shard shard(String owner) {
+        return this.owners.computeIfAbsent(owner, k -> new Shard());
+    }
+
+    /**
+     * Get the counts of this owner's playlists.
+     */
+    PlaylistAccounting.Usage getUsage() {
+        return this.accounting.usage(this.owner);
+    }
+
+    /**
+     * Get the counts of every owner's playlists together.
+     */
+    PlaylistAccounting.Usage getTotalUsage() {
+        return this.accounting.total();
+    }
+
+    /**
+     * Get the number of owners that have playlists.
+     */
+    int getOwnersWithPlaylists() {
+        return this.accounting.owners();
+    }
+
+    PlaylistLimits getLimits() {
+        return this.limits;
     }
 
     /**
@@ -23,11 +180,16 @@ public class PlaylistLibrary {
      * Get a getVideoPlayList by playlist title. Returns null if the videoPlayList is not found.
      */
     VideoPlaylist getVideoPlayList(String title) {
-//        return this.videoPlayLists.get(title);
-        VideoPlaylist videoPlaylist = this.videoPlayLists.values()
-                .stream()
-                .filter(o -> o.getTitle().toLowerCase().equals(title.toLowerCase())).findAny().orElse(null);
-        return videoPlaylist;
+        return this.videoPlayLists.get(key(title));
+    }
+
+    /**
+     * Get this owner's playlists containing a video, in no particular order. Returns an empty list if there are none.
+     */
+    List<VideoPlaylist> getVideoPlayListsContaining(String videoId) {
+        Video video = this.videoLibrary.getVideo(videoId);
+        Set<VideoPlaylist> playlists = video == null ? null : this.videoPlayListsByVideo.get(video.getOrdinal());
+        return playlists == null ? new ArrayList<>() : new ArrayList<>(playlists);
     }
 
 
@@ -35,17 +197,34 @@ public class PlaylistLibrary {
      * Get a getvideoPlayList by id. Returns null if the videoPlayList is not found.
      */
     boolean createPlayList(String title) {
-        boolean listContainsNewPlayList = this.videoPlayLists.values().stream().anyMatch(o -> o.getTitle().toLowerCase().equals(title.toLowerCase()));
-
-        if (listContainsNewPlayList) {
-            System.out.println("Cannot create playlist: A playlist with the same name already exists");
-            return false;
-        } else {
-            VideoPlaylist newVideoPlayList = new VideoPlaylist(title, null);
-            this.videoPlayLists.put(title, newVideoPlayList);
-            System.out.println(String.format("Successfully created new playlist: %s", newVideoPlayList.title));
-            return true;
+        VideoPlaylist newVideoPlayList = new VideoPlaylist(this.owner, title);
+        long logged;
+        this.changes.readLock().lock();
+        try {
+            // the new playlist is locked before it is published, so no change to it can be logged before its creation
+            synchronized (newVideoPlayList) {
+                if (!this.accounting.reservePlaylist(this.owner, title, this.limits.maxPlaylists())) {
+                    this.out.println(this.getVideoPlayList(title) != null
+                            ? "Cannot create playlist: A playlist with the same name already exists"
+                            : String.format("Cannot create playlist: Playlist limit of %d reached",
+                                    this.limits.maxPlaylists()));
+                    return false;
+                }
+                if (this.videoPlayLists.putIfAbsent(key(title), newVideoPlayList) != null) {
+                    this.accounting.playlistDeleted(this.owner, title, 0);
+                    this.out.println("Cannot create playlist: A playlist with the same name already exists");
+                    return false;
+                }
+                logged = this.log(PlaylistLog.CREATE, newVideoPlayList, null);
+            }
+        } finally {
+            this.changes.readLock().unlock();
         }
+        this.awaitLogged(logged);
+        this.compactIfNeeded();
+        this.out.println(String.format("Successfully created new playlist: %s", newVideoPlayList.getTitle()));
+        this.warnIfOverSoftLimits();
+        return true;
     }
 
     /**
@@ -63,92 +242,203 @@ public class PlaylistLibrary {
     }
 
     private boolean addOrRemovedVideoToPlaylist(String title, Video video, boolean addOrRemove) {
-        try {
-            //TODO: change videoList to a List<String> and add videoId
-            // get playlist by title
-            VideoPlaylist videoPlaylist = this.getVideoPlayList(title);
-            List<String> videosList = videoPlaylist.getVideosList();
-            // initiate videoList if it is null
-            if (videosList == null)
-                videosList = new ArrayList<String>();
+        String playlistDoesNotExist = addOrRemove
+                ? String.format("Cannot add video to %s: Playlist does not exist", title)
+                : String.format("Cannot remove video from %s: Playlist does not exist", title);
 
-            try {
-                // check if video is flagged
-                if(video.getFlagged())
-                {
-                    String reason = video.getFlaggedReason() != null ? video.getFlaggedReason() : "Not supplied";
-                    System.out.println(String.format("Cannot add video to %s: Video is currently flagged (reason:" +
-                            " %s)", title, reason));
-                    return false;
-                }
+        // get playlist by title
+        VideoPlaylist videoPlaylist = this.getVideoPlayList(title);
+        if (videoPlaylist == null) {
+            this.out.println(playlistDoesNotExist);
+            return false;
+        }
 
-                // check if video exists in the playlist
-                var videoId = video.getVideoId();
-                var videoListContainsNewVideo =
-                        videosList.stream().anyMatch(o -> o.equals(videoId));
-                if (videoListContainsNewVideo && addOrRemove) {
-                    System.out.println(String.format("Cannot add video to %s: Video already added", title));
-                    return false;
-                }
+        if (video == null) {
+            this.out.println(addOrRemove ?
+                    String.format("Cannot add video to %s: Video does not exist", title)
+                    : String.format("Cannot remove video from %s: Video does not exist", title));
+            return false;
+        }
+
+        // check if video is flagged
+        if(video.getFlagged())
+        {
+            String reason = video.getFlaggedReason() != null ? video.getFlaggedReason() : "Not supplied";
+            this.out.println(String.format("Cannot add video to %s: Video is currently flagged (reason:" +
+                    " %s)", title, reason));
+            return false;
+        }
 
-                if(!videoListContainsNewVideo && !addOrRemove && video != null) {
-                    // video is not in the playlist
-                    System.out.println(String.format("Cannot remove video from %s: Video is not in playlist", title));
+        // add or remove the video, failing if it is already (or not) in the playlist
+        var videoId = video.getVideoId();
+        var ordinal = video.getOrdinal();
+        long logged;
+        this.changes.readLock().lock();
+        try {
+            synchronized (videoPlaylist) {
+                if (videoPlaylist.isDeleted()) {
+                    this.out.println(playlistDoesNotExist);
                     return false;
                 }
 
                 if (addOrRemove) {
-                    // add video to playlist videos
-                    videosList.add(video.getVideoId());
+                    if (videoPlaylist.contains(ordinal)) {
+                        this.out.println(String.format("Cannot add video to %s: Video already added", title));
+                        return false;
+                    }
+                    if (!this.accounting.reserveEntries(this.owner, 1, this.limits.maxEntries())) {
+                        this.out.println(String.format("Cannot add video to %s: Playlist entry limit of %d reached",
+                                title, this.limits.maxEntries()));
+                        return false;
+                    }
+                    this.add(videoPlaylist, ordinal);
+                } else if (!this.remove(videoPlaylist, ordinal)) {
+                    this.out.println(String.format("Cannot remove video from %s: Video is not in playlist", title));
+                    return false;
                 }
-                else
-                    // remove video to playlist videos
-                    videosList.remove(video.getVideoId());
-
-                // update playlist
-                videoPlaylist.setVideosList(videosList);
-                this.videoPlayLists.put(videoPlaylist.title, videoPlaylist);
-                System.out.println(addOrRemove ? String.format("Added video " +
-                        "to %s: %s", title, video.getTitle())
-                        : String.format("Removed video from %s: %s", title, video.getTitle()));
-            } catch (Exception e) {
-                System.out.println(addOrRemove ?
-                        String.format("Cannot add video to %s: Video does not exist", title)
-                        : String.format("Cannot remove video from %s: Video does not exist", title));
-                return false;
+                logged = this.log(addOrRemove ? PlaylistLog.ADD : PlaylistLog.REMOVE, videoPlaylist, videoId);
             }
-        } catch (Exception e) {
-            System.out.println(addOrRemove ? String.format("Cannot add video to %s: Playlist does not exist", title)
-                    : String.format("Cannot remove video from %s: Playlist does not exist", title));
-            return false;
+        } finally {
+            this.changes.readLock().unlock();
         }
+        this.awaitLogged(logged);
+        this.compactIfNeeded();
 
+        this.out.println(addOrRemove ? String.format("Added video " +
+                "to %s: %s", title, video.getTitle())
+                : String.format("Removed video from %s: %s", title, video.getTitle()));
+        if (addOrRemove)
+            this.warnIfOverSoftLimits();
         return true;
     }
 
     /**
-     * Remove All Videos from VideoPlayList. returns false if does not exists;
+     * Add many videos to VideoPlayList in one pass and print a summary of the videos that couldn't be added. Returns
+     * the number of videos added, or -1 if the playlist does not exist.
      */
-    boolean removeAllVideosFromPlayList(String title) {
+    int addVideosToPlayList(String title, List<String> videoIds, Function<String, Video> videos) {
+        return addOrRemoveVideosToPlaylist(title, videoIds, videos, true);
+    }
+
+    /**
+     * Remove many videos from VideoPlayList in one pass and print a summary of the videos that couldn't be removed.
+     * Returns the number of videos removed, or -1 if the playlist does not exist.
+     */
+    int removeVideosFromPlayList(String title, List<String> videoIds, Function<String, Video> videos) {
+        return addOrRemoveVideosToPlaylist(title, videoIds, videos, false);
+    }
+
+    private int addOrRemoveVideosToPlaylist(String title, List<String> videoIds, Function<String, Video> videos,
+                                            boolean addOrRemove) {
+        String playlistDoesNotExist = addOrRemove
+                ? String.format("Cannot add videos to %s: Playlist does not exist", title)
+                : String.format("Cannot remove videos from %s: Playlist does not exist", title);
+        VideoPlaylist videoPlaylist = this.getVideoPlayList(title);
+        if (videoPlaylist == null) {
+            this.out.println(playlistDoesNotExist);
+            return -1;
+        }
+
+        // the playlist is resolved and locked once; every video is checked and applied against it, and failures are
+        // grouped
+        List<String> changed = new ArrayList<>();
+        Map<String, List<String>> skipped = new LinkedHashMap<>();
+        long logged;
+        this.changes.readLock().lock();
         try {
-            // get playlist by title
-            VideoPlaylist videoPlaylist = this.getVideoPlayList(title);
-            List<String> videosList = videoPlaylist.getVideosList();
+            synchronized (videoPlaylist) {
+                if (videoPlaylist.isDeleted()) {
+                    this.out.println(playlistDoesNotExist);
+                    return -1;
+                }
 
-            for (String videoId: new ArrayList<String>(videosList)) {
-                // remove video to playlist videos
-                videosList.remove(videoId);
+                for (String videoId : videoIds) {
+                    Video video = videos.apply(videoId);
+                    String reason;
+                    if (video == null)
+                        reason = "Video does not exist";
+                    else if (addOrRemove && video.getFlagged())
+                        reason = "Video is currently flagged";
+                    else if (addOrRemove && videoPlaylist.contains(video.getOrdinal()))
+                        reason = "Video already added";
+                    else if (addOrRemove && !this.accounting.reserveEntries(this.owner, 1, this.limits.maxEntries()))
+                        reason = "Playlist entry limit reached";
+                    else if (addOrRemove ? this.add(videoPlaylist, video.getOrdinal())
+                            : this.remove(videoPlaylist, video.getOrdinal())) {
+                        changed.add(videoId);
+                        continue;
+                    } else
+                        reason = "Video is not in playlist";
+                    skipped.computeIfAbsent(reason, k -> new ArrayList<>()).add(videoId);
+                }
+                logged = this.logAll(addOrRemove ? PlaylistLog.ADD : PlaylistLog.REMOVE, videoPlaylist, changed);
             }
+        } finally {
+            this.changes.readLock().unlock();
+        }
+        this.awaitLogged(logged);
+        this.compactIfNeeded();
+
+        this.out.println(addOrRemove ? String.format("Added %s to %s", videos(changed.size()), title)
+                : String.format("Removed %s from %s", videos(changed.size()), title));
+        for (Map.Entry<String, List<String>> failure : skipped.entrySet()) {
+            List<String> failed = failure.getValue();
+            String shown = String.join(", ", failed.subList(0, Math.min(failed.size(), SUMMARY_VIDEO_IDS)));
+            if (failed.size() > SUMMARY_VIDEO_IDS)
+                shown += String.format(" and %d more", failed.size() - SUMMARY_VIDEO_IDS);
+            this.out.println(String.format("Skipped %s: %s (%s)", videos(failed.size()), failure.getKey(), shown));
+        }
+        if (addOrRemove && !changed.isEmpty())
+            this.warnIfOverSoftLimits();
+        return changed.size();
+    }
 
-            // update playlist
-            videoPlaylist.setVideosList(videosList);
+    /**
+     * Print a warning for each soft limit this owner is over. Only changes that grow the playlists warn.
+     */
+    private void warnIfOverSoftLimits() {
+        PlaylistAccounting.Usage usage = this.getUsage();
+        if (usage.playlists() > this.limits.softPlaylists())
+            this.out.println(String.format("Warning: %d playlists is over the soft limit of %d",
+                    usage.playlists(), this.limits.softPlaylists()));
+        if (usage.entries() > this.limits.softEntries())
+            this.out.println(String.format("Warning: %d videos in playlists is over the soft limit of %d",
+                    usage.entries(), this.limits.softEntries()));
+    }
 
-            System.out.println(String.format("Successfully removed all videos from %s", title));
+    private static String videos(int count) {
+        return count == 1 ? "1 video" : String.format("%d videos", count);
+    }
 
-        } catch (Exception e) {
-            System.out.println(String.format("Cannot clear playlist %s: Playlist does not exist", title));
+    /**
+     * Remove All Videos from VideoPlayList. returns false if does not exists;
+     */
+    boolean removeAllVideosFromPlayList(String title) {
+        VideoPlaylist videoPlaylist = this.getVideoPlayList(title);
+        boolean cleared = false;
+        long logged = 0;
+        if (videoPlaylist != null) {
+            this.changes.readLock().lock();
+            try {
+                synchronized (videoPlaylist) {
+                    if (!videoPlaylist.isDeleted()) {
+                        this.clear(videoPlaylist);
+                        logged = this.log(PlaylistLog.CLEAR, videoPlaylist, null);
+                        cleared = true;
+                    }
+                }
+            } finally {
+                this.changes.readLock().unlock();
+            }
+        }
+
+        if (!cleared) {
+            this.out.println(String.format("Cannot clear playlist %s: Playlist does not exist", title));
             return false;
         }
+        this.awaitLogged(logged);
+        this.compactIfNeeded();
+        this.out.println(String.format("Successfully removed all videos from %s", title));
         return true;
     }
 
@@ -156,17 +446,263 @@ public class PlaylistLibrary {
      * Delete VideoPlayList. returns false if does not exists;
      */
     boolean deletePlayList(String title) {
-        try {
-            if(this.videoPlayLists.values().stream().anyMatch(x -> x.getTitle().equalsIgnoreCase(title))) {
-                this.videoPlayLists.remove(title);
-                System.out.println(String.format("Deleted playlist: %s", title));
-            } else {
-                System.out.println(String.format("Cannot delete playlist %s: Playlist does not exist", title));
+        VideoPlaylist videoPlaylist = this.getVideoPlayList(title);
+        boolean deleted = false;
+        long logged = 0;
+        if (videoPlaylist != null) {
+            this.changes.readLock().lock();
+            try {
+                synchronized (videoPlaylist) {
+                    if (!videoPlaylist.isDeleted()) {
+                        // logged before the name is released, so a playlist created under it is logged after this
+                        logged = this.log(PlaylistLog.DELETE, videoPlaylist, null);
+                        this.delete(videoPlaylist);
+                        deleted = true;
+                    }
+                }
+            } finally {
+                this.changes.readLock().unlock();
             }
-        } catch (Exception e) {
-            System.out.println(String.format("Cannot delete playlist %s: Playlist does not exist", title));
-            return false;
         }
+
+        if (deleted) {
+            this.awaitLogged(logged);
+            this.compactIfNeeded();
+            this.out.println(String.format("Deleted playlist: %s", title));
+        } else {
+            this.out.println(String.format("Cannot delete playlist %s: Playlist does not exist", title));
+        }
+        return true;
+    }
+
+    /**
+     * Close the log, if there is one. Every change is already on disk, so this only stops its background threads.
+     */
+    void close() throws IOException {
+        if (this.log != null)
+            this.log.close();
+    }
+
+    /*
+      the mutators below apply a change without printing or logging it; the caller holds the playlist's lock. the
+      commands above log what they changed, and replaying the log on start calls these directly. removals are
+      accounted for here; an added entry is accounted for by the caller, as a command reserves it against the limit
+      before adding it
+    */
+    private boolean add(VideoPlaylist videoPlaylist, int ordinal) {
+        if (!videoPlaylist.add(ordinal))
+            return false;
+        this.link(ordinal, videoPlaylist);
         return true;
     }
+
+    private boolean remove(VideoPlaylist videoPlaylist, int ordinal) {
+        if (!videoPlaylist.remove(ordinal))
+            return false;
+        this.unlink(ordinal, videoPlaylist);
+        this.accounting.entriesRemoved(videoPlaylist.getOwner(), 1);
+        return true;
+    }
+
+    private void clear(VideoPlaylist videoPlaylist) {
+        this.unlinkAll(videoPlaylist);
+        this.accounting.entriesRemoved(videoPlaylist.getOwner(), videoPlaylist.size());
+        videoPlaylist.clear();
+    }
+
+    private void delete(VideoPlaylist videoPlaylist) {
+        videoPlaylist.markDeleted();
+        this.unlinkAll(videoPlaylist);
+        this.accounting.playlistDeleted(videoPlaylist.getOwner(), videoPlaylist.getTitle(), videoPlaylist.size());
+        this.shard(videoPlaylist.getOwner()).playlists.remove(key(videoPlaylist.getTitle()), videoPlaylist);
+    }
+
+    /**
+     * Append an applied change to the log, if there is one, without waiting for it to reach the disk. The caller holds
+     * the playlist's lock, so changes to a playlist are logged in the order they were applied, and passes the returned
+     * sequence number to awaitLogged() once it has let go of its locks. A change that can't be written stays applied
+     * and is reported.
+     */
+    private long log(byte op, VideoPlaylist videoPlaylist, String videoId) {
+        if (this.log == null)
+            return 0;
+        try {
+            return this.log.enqueue(op, videoPlaylist.getOwner(), videoPlaylist.getTitle(), videoId);
+        } catch (IOException e) {
+            System.err.println("Couldn't write playlist log: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private long logAll(byte op, VideoPlaylist videoPlaylist, List<String> videoIds) {
+        if (this.log == null || videoIds.isEmpty())
+            return 0;
+        try {
+            return this.log.enqueueAll(op, videoPlaylist.getOwner(), videoPlaylist.getTitle(), videoIds);
+        } catch (IOException e) {
+            System.err.println("Couldn't write playlist log: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Wait for the logged changes up to a sequence number from log() to reach the disk, so a command only reports a
+     * change once it would survive a crash. No lock is held while waiting, so other changes, to this playlist too, go
+     * on and share the fsync.
+     */
+    private void awaitLogged(long logged) {
+        if (this.log == null || logged == 0)
+            return;
+        try {
+            this.log.awaitDurable(logged);
+        } catch (IOException e) {
+            System.err.println("Couldn't write playlist log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Start a compaction of the log once it has grown enough. Changes are held off while the playlists are copied.
+     */
+    private void compactIfNeeded() {
+        if (this.log == null || !this.log.needsCompaction())
+            return;
+        this.changes.writeLock().lock();
+        try {
+            if (this.log.needsCompaction())
+                this.log.compact(this.snapshot());
+        } finally {
+            this.changes.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Take the current version of every owner's playlists. The caller holds the write lock; the versions don't change
+     * after it is released, so they are written out without copying them.
+     */
+    private List<PlaylistLog.Entry> snapshot() {
+        List<PlaylistLog.Entry> snapshot = new ArrayList<>();
+        for (Shard shard : this.owners.values()) {
+            for (VideoPlaylist videoPlaylist : shard.playlists.values()) {
+                snapshot.add(new PlaylistLog.Entry(
+                        videoPlaylist.getOwner(), videoPlaylist.getTitle(), this.videoIds(videoPlaylist.getVideos())));
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Get the ids of the videos in a version of a playlist, looked up as they are read. Videos removed from the catalog
+     * keep their id.
+     */
+    Iterable<String> videoIds(PlaylistVideos videos) {
+        return () -> new Iterator<>() {
+            private final PrimitiveIterator.OfInt ordinals = videos.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return ordinals.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return videoLibrary.videoIdAt(ordinals.nextInt());
+            }
+        };
+    }
+
+    private void unlinkAll(VideoPlaylist videoPlaylist) {
+        for (PrimitiveIterator.OfInt ordinals = videoPlaylist.getVideos().iterator(); ordinals.hasNext(); ) {
+            this.unlink(ordinals.nextInt(), videoPlaylist);
+        }
+    }
+
+    private void link(int ordinal, VideoPlaylist videoPlaylist) {
+        this.shard(videoPlaylist.getOwner()).playlistsByVideo.compute(ordinal, (k, playlists) -> {
+            if (playlists == null)
+                playlists = ConcurrentHashMap.newKeySet();
+            playlists.add(videoPlaylist);
+            return playlists;
+        });
+    }
+
+    private void unlink(int ordinal, VideoPlaylist videoPlaylist) {
+        this.shard(videoPlaylist.getOwner()).playlistsByVideo.computeIfPresent(ordinal, (k, playlists) -> {
+            playlists.remove(videoPlaylist);
+            return playlists.isEmpty() ? null : playlists;
+        });
+    }
+
+    /**
+     * Playlist names are case-insensitive, so playlists are stored under their lower-cased title.
+     */
+    private static String key(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The playlists of one owner, and which of them contain each video. The sets are changed in place under the map's
+     * lock for the video, so adding a video to one more playlist doesn't copy the others; reads iterate them without
+     * locking.
+     */
+    private static final class Shard {
+        final ConcurrentHashMap<String, VideoPlaylist> playlists = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Integer, Set<VideoPlaylist>> playlistsByVideo = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Applies the changes in the log to the playlists as it is replayed, before the library is shared. The log repeats
+     * the same owner and title strings for a run of changes to one playlist, so the last playlist looked up is
+     * remembered. Videos no longer in the catalog are given an ordinal, so they stay in their playlists and are shown
+     * again if a reload brings them back.
+     */
+    private class Replay implements PlaylistLog.Replay {
+        private String lastOwner;
+        private String lastTitle;
+        private VideoPlaylist lastPlaylist;
+
+        @Override
+        public void create(String owner, String title) {
+            if (shard(owner).playlists.putIfAbsent(key(title), new VideoPlaylist(owner, title)) == null)
+                accounting.playlistCreated(owner, title);
+            this.lastTitle = null;
+        }
+
+        @Override
+        public void add(String owner, String title, String videoId) {
+            VideoPlaylist videoPlaylist = this.playlist(owner, title);
+            if (videoPlaylist != null && PlaylistLibrary.this.add(videoPlaylist, videoLibrary.reserveOrdinal(videoId)))
+                accounting.entriesAdded(owner, 1);
+        }
+
+        @Override
+        public void remove(String owner, String title, String videoId) {
+            VideoPlaylist videoPlaylist = this.playlist(owner, title);
+            if (videoPlaylist != null)
+                PlaylistLibrary.this.remove(videoPlaylist, videoLibrary.reserveOrdinal(videoId));
+        }
+
+        @Override
+        public void clear(String owner, String title) {
+            VideoPlaylist videoPlaylist = this.playlist(owner, title);
+            if (videoPlaylist != null)
+                PlaylistLibrary.this.clear(videoPlaylist);
+        }
+
+        @Override
+        public void delete(String owner, String title) {
+            VideoPlaylist videoPlaylist = this.playlist(owner, title);
+            if (videoPlaylist != null)
+                PlaylistLibrary.this.delete(videoPlaylist);
+            this.lastTitle = null;
+        }
+
+        private VideoPlaylist playlist(String owner, String title) {
+            if (owner != this.lastOwner || title != this.lastTitle) {
+                this.lastPlaylist = shard(owner).playlists.get(key(title));
+                this.lastOwner = owner;
+                this.lastTitle = title;
+            }
+            return this.lastPlaylist;
+        }
+    }
 }
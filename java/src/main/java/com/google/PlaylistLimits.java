@@ -0,0 +1,68 @@
+package com.google;
+
+/**
+ * A class used to hold how many playlists, and playlist entries across all
+ * their playlists, each owner may have. Going over a soft limit is allowed
+ * but warned about; a change that would go over a hard limit is refused.
+ */
+final class PlaylistLimits {
+
+  /** System property setting the soft limit on an owner's playlists. */
+  static final String SOFT_PLAYLISTS_PROPERTY = "playlists.softLimit";
+
+  /** System property setting the hard limit on an owner's playlists. */
+  static final String MAX_PLAYLISTS_PROPERTY = "playlists.hardLimit";
+
+  /** System property setting the soft limit on an owner's playlist entries. */
+  static final String SOFT_ENTRIES_PROPERTY = "playlists.entries.softLimit";
+
+  /** System property setting the hard limit on an owner's playlist entries. */
+  static final String MAX_ENTRIES_PROPERTY = "playlists.entries.hardLimit";
+
+  /** No limits at all. */
+  static final PlaylistLimits NONE =
+      new PlaylistLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+
+  private final int softPlaylists;
+  private final int maxPlaylists;
+  private final long softEntries;
+  private final long maxEntries;
+
+  PlaylistLimits(int softPlaylists, int maxPlaylists, long softEntries, long maxEntries) {
+    this.softPlaylists = softPlaylists;
+    this.maxPlaylists = maxPlaylists;
+    this.softEntries = softEntries;
+    this.maxEntries = maxEntries;
+  }
+
+  /** Returns the limits set by system properties; a limit that isn't set is unlimited. */
+  static PlaylistLimits fromSystemProperties() {
+    return new PlaylistLimits(
+        Integer.getInteger(SOFT_PLAYLISTS_PROPERTY, Integer.MAX_VALUE),
+        Integer.getInteger(MAX_PLAYLISTS_PROPERTY, Integer.MAX_VALUE),
+        Long.getLong(SOFT_ENTRIES_PROPERTY, Long.MAX_VALUE),
+        Long.getLong(MAX_ENTRIES_PROPERTY, Long.MAX_VALUE));
+  }
+
+  int softPlaylists() {
+    return softPlaylists;
+  }
+
+  int maxPlaylists() {
+    return maxPlaylists;
+  }
+
+  long softEntries() {
+    return softEntries;
+  }
+
+  long maxEntries() {
+    return maxEntries;
+  }
+
+  /** Returns whether any limit is set. */
+  boolean isLimited() {
+    return softPlaylists != Integer.MAX_VALUE || maxPlaylists != Integer.MAX_VALUE
+        || softEntries != Long.MAX_VALUE || maxEntries != Long.MAX_VALUE;
+  }
+}
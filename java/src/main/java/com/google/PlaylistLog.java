@@ -0,0 +1,520 @@
+package com.google;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+/**
+ * A class used to make playlists durable. Every playlist change is appended to
+ * a log file as a checksummed record and the playlists are rebuilt on start by
+ * replaying it. Concurrent appends share one fsync (group commit), and once the
+ * log has doubled since it was last compacted it is rewritten in the background
+ * as the few records that recreate the current playlists.
+ *
+ * <pre>
+ * int  magic "YTPL"
+ * int  version
+ * records, each:
+ *   int  body length
+ *   int  body CRC32
+ *   byte op
+ *   int  owner length, owner UTF-8
+ *   int  title length, title UTF-8
+ *   int  video id length, video id UTF-8 (ADD and REMOVE only)
+ * </pre>
+ *
+ * A torn or corrupt record, as left by a crash in the middle of an append, ends
+ * the log; it and anything after it are truncated away on open.
+ */
+class PlaylistLog implements Closeable {
+
+  static final int MAGIC = 0x5954504c;
+  static final int VERSION = 2;
+  private static final int HEADER_SIZE = 4 + 4;
+  private static final int RECORD_HEADER_SIZE = 4 + 4;
+
+  static final byte CREATE = 1;
+  static final byte ADD = 2;
+  static final byte REMOVE = 3;
+  static final byte CLEAR = 4;
+  static final byte DELETE = 5;
+
+  /** Logs smaller than this are never compacted. */
+  static final long MIN_COMPACTION_BYTES = 1L << 20;
+
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  /** Receives the changes in a log as it is replayed. */
+  interface Replay {
+    void create(String owner, String title);
+
+    void add(String owner, String title, String videoId);
+
+    void remove(String owner, String title, String videoId);
+
+    void clear(String owner, String title);
+
+    void delete(String owner, String title);
+  }
+
+  /** The videos of one playlist, as written by a compaction. */
+  static final class Entry {
+
+    final String owner;
+    final String title;
+    final Iterable<String> videoIds;
+
+    Entry(String owner, String title, Iterable<String> videoIds) {
+      this.owner = owner;
+      this.title = title;
+      this.videoIds = videoIds;
+    }
+  }
+
+  private final Path file;
+  private final Thread flusher;
+
+  // guards the channel, and is always taken before this
+  private final Object io = new Object();
+  private FileChannel channel;
+  private ByteBuffer writing = ByteBuffer.allocate(BUFFER_SIZE);
+
+  // guarded by this
+  private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+  private long appendedSeq;
+  private long durableSeq;
+  private long appendedBytes;
+  private long compactedBytes;
+  private Thread compaction;
+  private IOException failure;
+  private boolean closed;
+
+  private PlaylistLog(Path file, FileChannel channel, long size) {
+    this.file = file;
+    this.channel = channel;
+    this.appendedBytes = size;
+    this.compactedBytes = size;
+    this.flusher = new Thread(this::flushUntilClosed, "playlist-log-flusher");
+    this.flusher.setDaemon(true);
+  }
+
+  /**
+   * Opens the log, creating it if it does not exist, and replays the changes already in it.
+   * Throws if the file is not a playlist log.
+   */
+  static PlaylistLog open(Path file, Replay replay) throws IOException {
+    FileChannel channel = FileChannel.open(file,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      long end = replay(channel, replay);
+      if (end == 0) {
+        channel.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+        end = HEADER_SIZE;
+      }
+      channel.truncate(end);
+      channel.position(end);
+      channel.force(true);
+
+      PlaylistLog log = new PlaylistLog(file, channel, end);
+      log.flusher.start();
+      return log;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /** Replays the records in the channel and returns the offset just past the last intact one. */
+  private static long replay(FileChannel channel, Replay replay) throws IOException {
+    long size = channel.size();
+    if (size == 0) {
+      return 0;
+    }
+
+    Reader reader = new Reader(channel);
+    if (!reader.request(HEADER_SIZE) || reader.buffer.getInt() != MAGIC || reader.buffer.getInt() != VERSION) {
+      throw new IOException("Not a playlist log: " + channel);
+    }
+
+    long offset = HEADER_SIZE;
+    CRC32 crc = new CRC32();
+    Titles owners = new Titles();
+    Titles titles = new Titles();
+    while (reader.request(RECORD_HEADER_SIZE)) {
+      int length = reader.buffer.getInt();
+      int checksum = reader.buffer.getInt();
+      if (length < 1 + 4 || length > size - offset - RECORD_HEADER_SIZE || !reader.request(length)) {
+        break;
+      }
+
+      ByteBuffer body = reader.buffer.slice();
+      body.limit(length);
+      reader.buffer.position(reader.buffer.position() + length);
+      crc.reset();
+      crc.update(body.duplicate());
+      if ((int) crc.getValue() != checksum || !apply(body, owners, titles, replay)) {
+        break;
+      }
+      offset += RECORD_HEADER_SIZE + length;
+    }
+    return offset;
+  }
+
+  private static boolean apply(ByteBuffer body, Titles owners, Titles titles, Replay replay) {
+    byte op = body.get();
+    String owner = owners.decode(body);
+    String title = titles.decode(body);
+    switch (op) {
+      case CREATE:
+        replay.create(owner, title);
+        return true;
+      case ADD:
+        replay.add(owner, title, string(body));
+        return true;
+      case REMOVE:
+        replay.remove(owner, title, string(body));
+        return true;
+      case CLEAR:
+        replay.clear(owner, title);
+        return true;
+      case DELETE:
+        replay.delete(owner, title);
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static String string(ByteBuffer body) {
+    int length = body.getInt();
+    String string = new String(body.array(), body.arrayOffset() + body.position(), length, StandardCharsets.UTF_8);
+    body.position(body.position() + length);
+    return string;
+  }
+
+  /** Encodes a change as a record, header included. The video id is null for playlist-wide changes. */
+  private static byte[] record(byte op, String owner, String title, String videoId) {
+    byte[] ownerBytes = owner.getBytes(StandardCharsets.UTF_8);
+    byte[] titleBytes = title.getBytes(StandardCharsets.UTF_8);
+    byte[] videoIdBytes = videoId != null ? videoId.getBytes(StandardCharsets.UTF_8) : null;
+    int length = 1 + 4 + ownerBytes.length + 4 + titleBytes.length
+        + (videoIdBytes != null ? 4 + videoIdBytes.length : 0);
+
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+    record.position(RECORD_HEADER_SIZE);
+    record.put(op).putInt(ownerBytes.length).put(ownerBytes).putInt(titleBytes.length).put(titleBytes);
+    if (videoIdBytes != null) {
+      record.putInt(videoIdBytes.length).put(videoIdBytes);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), RECORD_HEADER_SIZE, length);
+    record.putInt(0, length).putInt(4, (int) crc.getValue());
+    return record.array();
+  }
+
+  /**
+   * Appends a change and returns once it is on disk. Changes appended at the same time by other
+   * threads are written with the same fsync.
+   */
+  void append(byte op, String owner, String title, String videoId) throws IOException {
+    awaitDurable(enqueue(op, owner, title, videoId));
+  }
+
+  /**
+   * Appends the same change for many videos of one playlist and returns once all of them are on
+   * disk, with a single fsync.
+   */
+  void appendAll(byte op, String owner, String title, Collection<String> videoIds) throws IOException {
+    awaitDurable(enqueueAll(op, owner, title, videoIds));
+  }
+
+  /**
+   * Appends a change without waiting for it to reach the disk, and returns its sequence number for
+   * {@link #awaitDurable}. Changes are written in the order they are enqueued, so a caller can
+   * enqueue while holding the lock that orders its changes and wait once it has let go of it.
+   */
+  long enqueue(byte op, String owner, String title, String videoId) throws IOException {
+    return enqueue(record(op, owner, title, videoId));
+  }
+
+  /**
+   * Appends the same change for many videos of one playlist without waiting for it to reach the
+   * disk, and returns the sequence number of the last of them for {@link #awaitDurable}.
+   */
+  long enqueueAll(byte op, String owner, String title, Collection<String> videoIds) throws IOException {
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    for (String videoId : videoIds) {
+      records.write(record(op, owner, title, videoId));
+    }
+    return enqueue(records.toByteArray());
+  }
+
+  private synchronized long enqueue(byte[] record) throws IOException {
+    if (closed) {
+      throw new IOException("Playlist log is closed");
+    }
+    if (pending.remaining() < record.length) {
+      ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + record.length));
+      pending = grown.put(pending.flip());
+    }
+    pending.put(record);
+    appendedBytes += record.length;
+    notifyAll();
+    return ++appendedSeq;
+  }
+
+  /** Returns once the change with the given sequence number, and every change before it, is on disk. */
+  synchronized void awaitDurable(long seq) throws IOException {
+    while (durableSeq < seq && failure == null) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for the playlist log");
+      }
+    }
+    if (durableSeq < seq) {
+      throw new IOException("Couldn't write playlist log", failure);
+    }
+  }
+
+  private void flushUntilClosed() {
+    try {
+      while (true) {
+        synchronized (this) {
+          while (pending.position() == 0 && !closed) {
+            wait();
+          }
+          if (pending.position() == 0) {
+            return;
+          }
+        }
+        synchronized (io) {
+          flushPending();
+        }
+      }
+    } catch (InterruptedException e) {
+      // closed
+    } catch (IOException e) {
+      synchronized (this) {
+        failure = e;
+        notifyAll();
+      }
+    }
+  }
+
+  /** Writes and syncs everything appended so far. The caller holds io. */
+  private void flushPending() throws IOException {
+    long seq;
+    synchronized (this) {
+      if (pending.position() == 0) {
+        return;
+      }
+      ByteBuffer batch = pending;
+      pending = writing;
+      writing = batch;
+      seq = appendedSeq;
+    }
+
+    writing.flip();
+    while (writing.hasRemaining()) {
+      channel.write(writing);
+    }
+    channel.force(false);
+    writing.clear();
+
+    synchronized (this) {
+      durableSeq = seq;
+      notifyAll();
+    }
+  }
+
+  /** Returns true if the log has grown enough since it was last compacted to be worth rewriting. */
+  synchronized boolean needsCompaction() {
+    return compaction == null && !closed
+        && appendedBytes >= MIN_COMPACTION_BYTES && appendedBytes >= 2 * compactedBytes;
+  }
+
+  /**
+   * Starts rewriting the log in the background as the records that recreate the given playlists,
+   * which must be the state after every change appended so far. Changes appended while the rewrite
+   * runs are carried over. Does nothing if a compaction is already running.
+   */
+  void compact(Collection<Entry> playlists) {
+    synchronized (this) {
+      if (compaction != null || closed) {
+        return;
+      }
+      long mark = appendedBytes;
+      compaction = new Thread(() -> rewrite(playlists, mark), "playlist-log-compactor");
+      compaction.setDaemon(true);
+      compaction.start();
+    }
+  }
+
+  private void rewrite(Collection<Entry> playlists, long mark) {
+    Path temp = file.resolveSibling(file.getFileName() + ".compact");
+    try {
+      long size;
+      try (FileChannel out = FileChannel.open(temp,
+          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        for (Entry playlist : playlists) {
+          write(out, buffer, record(CREATE, playlist.owner, playlist.title, null));
+          for (String videoId : playlist.videoIds) {
+            write(out, buffer, record(ADD, playlist.owner, playlist.title, videoId));
+          }
+        }
+        drain(out, buffer);
+        long compacted = out.position();
+
+        synchronized (io) {
+          // the snapshot covers the log up to the mark, so only the changes after it are copied
+          flushPending();
+          for (long position = mark; position < channel.size(); ) {
+            position += channel.transferTo(position, channel.size() - position, out);
+          }
+          out.force(true);
+          size = out.position();
+
+          Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+          FileChannel old = channel;
+          channel = FileChannel.open(file, StandardOpenOption.WRITE);
+          channel.position(size);
+          old.close();
+          synchronized (this) {
+            appendedBytes = size;
+            compactedBytes = compacted;
+          }
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Couldn't compact playlist log: " + e.getMessage());
+      try {
+        Files.deleteIfExists(temp);
+      } catch (IOException ignored) {
+        // left for the next compaction to overwrite
+      }
+    } finally {
+      synchronized (this) {
+        compaction = null;
+        notifyAll();
+      }
+    }
+  }
+
+  private static void write(FileChannel out, ByteBuffer buffer, byte[] record) throws IOException {
+    if (buffer.remaining() < record.length) {
+      drain(out, buffer);
+    }
+    if (buffer.remaining() < record.length) {
+      out.write(ByteBuffer.wrap(record));
+    } else {
+      buffer.put(record);
+    }
+  }
+
+  private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /** Returns the size of the log, including changes not yet on disk. */
+  synchronized long size() {
+    return appendedBytes;
+  }
+
+  /** Waits for a running compaction and for pending changes to reach the disk, then closes the file. */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      notifyAll();
+      try {
+        while (compaction != null) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (io) {
+      channel.close();
+    }
+  }
+
+  /**
+   * Decodes owners or playlist titles, handing back the previous string itself while it repeats. A
+   * compacted log holds runs of records for the same playlist, so this saves a string per record
+   * and lets the replay recognise the playlist by identity.
+   */
+  private static final class Titles {
+
+    private byte[] bytes = new byte[0];
+    private String title;
+
+    String decode(ByteBuffer body) {
+      int length = body.getInt();
+      int start = body.arrayOffset() + body.position();
+      if (title == null
+          || !Arrays.equals(bytes, 0, bytes.length, body.array(), start, start + length)) {
+        bytes = Arrays.copyOfRange(body.array(), start, start + length);
+        title = new String(bytes, StandardCharsets.UTF_8);
+      }
+      body.position(body.position() + length);
+      return title;
+    }
+  }
+
+  /** Reads a file channel through a buffer that grows to fit the largest record. */
+  private static final class Reader {
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+
+    Reader(FileChannel channel) throws IOException {
+      this.channel = channel;
+      channel.position(0);
+    }
+
+    /** Makes the next count bytes available in the buffer. Returns false if the file ends first. */
+    boolean request(int count) throws IOException {
+      if (buffer.remaining() >= count) {
+        return true;
+      }
+      if (count > buffer.capacity()) {
+        buffer = ByteBuffer.allocate(count).put(buffer);
+      } else {
+        buffer.compact();
+      }
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // fill the buffer
+      }
+      buffer.flip();
+      return buffer.remaining() >= count;
+    }
+  }
+}
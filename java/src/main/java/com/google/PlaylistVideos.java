@@ -0,0 +1,196 @@
+package com.google;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A class used to hold one version of the videos of a playlist, as catalog
+ * ordinals. It is immutable: a change returns a new version that shares all
+ * but the changed path of a 32-way trie of int leaves with this one, so a
+ * change copies O(log n) nodes and readers can keep using the version they
+ * got without locking.
+ *
+ * <p>Videos are kept in slots in the order they were added. Removing a video
+ * empties its slot rather than shifting the videos after it, so slots are
+ * stable and {@link #holes()} grows until the owner rebuilds the version.
+ */
+final class PlaylistVideos implements Iterable<Integer> {
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+  private static final Object[] EMPTY_NODE = new Object[WIDTH];
+  // marks an emptied slot; ordinals are never negative
+  private static final int HOLE = -1;
+
+  static final PlaylistVideos EMPTY = new PlaylistVideos(0, 0, BITS, EMPTY_NODE, new int[0]);
+
+  // number of slots used, including emptied ones
+  private final int slots;
+  // number of videos, i.e. slots that aren't empty
+  private final int size;
+  private final int shift;
+  // inner nodes hold child arrays, the last level holds int[] leaves; the last, partly filled leaf is kept in tail
+  private final Object[] root;
+  private final int[] tail;
+
+  private PlaylistVideos(int slots, int size, int shift, Object[] root, int[] tail) {
+    this.slots = slots;
+    this.size = size;
+    this.shift = shift;
+    this.root = root;
+    this.tail = tail;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Returns the number of slots used, which is the slot the next video added goes in. */
+  int slots() {
+    return slots;
+  }
+
+  /** Returns the number of slots emptied by removals. */
+  int holes() {
+    return slots - size;
+  }
+
+  /** Returns the ordinal in a slot, or -1 if the slot has been emptied. */
+  int get(int slot) {
+    if (slot < 0 || slot >= slots) {
+      throw new IndexOutOfBoundsException(String.valueOf(slot));
+    }
+    return leafFor(slot)[slot & MASK];
+  }
+
+  /** Returns a version with the video added in the next slot. */
+  PlaylistVideos appended(int ordinal) {
+    if (slots - tailOffset() < WIDTH) {
+      int[] newTail = Arrays.copyOf(tail, tail.length + 1);
+      newTail[tail.length] = ordinal;
+      return new PlaylistVideos(slots + 1, size + 1, shift, root, newTail);
+    }
+
+    // the tail is full: push it into the trie, growing a level if the root is full too
+    Object[] newRoot;
+    int newShift = shift;
+    if ((slots >>> BITS) > (1 << shift)) {
+      newRoot = new Object[WIDTH];
+      newRoot[0] = root;
+      newRoot[1] = newPath(shift, tail);
+      newShift += BITS;
+    } else {
+      newRoot = pushTail(shift, root, tail);
+    }
+    return new PlaylistVideos(slots + 1, size + 1, newShift, newRoot, new int[] {ordinal});
+  }
+
+  /** Returns a version with a slot emptied. The slot must hold a video. */
+  PlaylistVideos without(int slot) {
+    if (slot >= tailOffset()) {
+      int[] newTail = tail.clone();
+      newTail[slot & MASK] = HOLE;
+      return new PlaylistVideos(slots, size - 1, shift, root, newTail);
+    }
+    return new PlaylistVideos(slots, size - 1, shift, (Object[]) clearSlot(shift, root, slot), tail);
+  }
+
+  /** Returns the ordinals in order. */
+  int[] toArray() {
+    int[] ordinals = new int[size];
+    PrimitiveIterator.OfInt iterator = iterator();
+    for (int i = 0; i < size; i++) {
+      ordinals[i] = iterator.nextInt();
+    }
+    return ordinals;
+  }
+
+  @Override
+  public PrimitiveIterator.OfInt iterator() {
+    return iterator(0);
+  }
+
+  /** Returns the ordinals in order, starting from a slot. */
+  PrimitiveIterator.OfInt iterator(int fromSlot) {
+    return new PrimitiveIterator.OfInt() {
+      private int slot = fromSlot;
+      private int[] leaf;
+
+      @Override
+      public boolean hasNext() {
+        while (slot < slots) {
+          if ((slot & MASK) == 0 || leaf == null) {
+            leaf = leafFor(slot);
+          }
+          if (leaf[slot & MASK] != HOLE) {
+            return true;
+          }
+          slot++;
+        }
+        return false;
+      }
+
+      @Override
+      public int nextInt() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return leaf[slot++ & MASK];
+      }
+    };
+  }
+
+  private int tailOffset() {
+    return slots < WIDTH ? 0 : ((slots - 1) >>> BITS) << BITS;
+  }
+
+  private int[] leafFor(int slot) {
+    if (slot >= tailOffset()) {
+      return tail;
+    }
+    Object node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = ((Object[]) node)[(slot >>> level) & MASK];
+    }
+    return (int[]) node;
+  }
+
+  private Object[] pushTail(int level, Object[] parent, int[] tailNode) {
+    Object[] node = parent.clone();
+    int index = ((slots - 1) >>> level) & MASK;
+    if (level == BITS) {
+      node[index] = tailNode;
+    } else {
+      Object[] child = (Object[]) parent[index];
+      node[index] = child != null ? pushTail(level - BITS, child, tailNode) : newPath(level - BITS, tailNode);
+    }
+    return node;
+  }
+
+  private static Object newPath(int level, int[] leaf) {
+    if (level == 0) {
+      return leaf;
+    }
+    Object[] node = new Object[WIDTH];
+    node[0] = newPath(level - BITS, leaf);
+    return node;
+  }
+
+  private static Object clearSlot(int level, Object node, int slot) {
+    if (level == 0) {
+      int[] leaf = ((int[]) node).clone();
+      leaf[slot & MASK] = HOLE;
+      return leaf;
+    }
+    Object[] copy = ((Object[]) node).clone();
+    int index = (slot >>> level) & MASK;
+    copy[index] = clearSlot(level - BITS, copy[index], slot);
+    return copy;
+  }
+}
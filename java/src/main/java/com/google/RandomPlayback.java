@@ -0,0 +1,109 @@
+package com.google;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A class used to say how PLAY_RANDOM picks a video. By default every
+ * playable video is equally likely and the choice is different on every run.
+ * A seed makes the sequence of picks repeat from run to run, for load tests,
+ * and tag weights make videos with some tags more or less likely: a video's
+ * weight is the largest weight among its tags, or 1 if none has one.
+ */
+final class RandomPlayback {
+
+  /** System property seeding the random picks. */
+  static final String SEED_PROPERTY = "playRandom.seed";
+
+  /** System property giving tag weights, e.g. "#cat=3,#dog=0.5". */
+  static final String TAG_WEIGHTS_PROPERTY = "playRandom.tagWeights";
+
+  /** Every playable video equally likely, unseeded. */
+  static final RandomPlayback UNIFORM = new RandomPlayback(null, Map.of());
+
+  // null to use the thread's own generator
+  private final Random random;
+  // by lower-cased tag, as tag searches match tags
+  private final Map<String, Double> tagWeights;
+  private final double maxWeight;
+
+  // the weights by tag id of the catalog they were last looked up for; the catalog only ever adds tags
+  private VideoCatalog weightsCatalog;
+  private double[] weightsByTagId;
+
+  RandomPlayback(Random random, Map<String, Double> tagWeights) {
+    this.random = random;
+    this.tagWeights = new HashMap<>();
+    double maxWeight = 1;
+    for (Map.Entry<String, Double> tagWeight : tagWeights.entrySet()) {
+      if (!(tagWeight.getValue() >= 0) || tagWeight.getValue().isInfinite()) {
+        throw new IllegalArgumentException("Tag weights must be finite and not negative: " + tagWeight);
+      }
+      this.tagWeights.put(tagWeight.getKey().toLowerCase(Locale.ROOT), tagWeight.getValue());
+      maxWeight = Math.max(maxWeight, tagWeight.getValue());
+    }
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Returns the playback set by system properties. Tag weights that don't
+   * parse are left out, the way an unparseable limit is left unset.
+   */
+  static RandomPlayback fromSystemProperties() {
+    Long seed = Long.getLong(SEED_PROPERTY);
+    Map<String, Double> tagWeights = new HashMap<>();
+    String property = System.getProperty(TAG_WEIGHTS_PROPERTY, "");
+    for (String entry : property.split(",")) {
+      String[] tagWeight = entry.trim().split("=");
+      if (tagWeight.length == 2) {
+        try {
+          double weight = Double.parseDouble(tagWeight[1].trim());
+          if (weight >= 0 && !Double.isInfinite(weight)) {
+            tagWeights.put(tagWeight[0].trim(), weight);
+          }
+        } catch (NumberFormatException e) {
+          // left out
+        }
+      }
+    }
+    return new RandomPlayback(seed != null ? new Random(seed) : null, tagWeights);
+  }
+
+  /** Returns the generator to pick with. */
+  Random random() {
+    return random != null ? random : ThreadLocalRandom.current();
+  }
+
+  boolean isWeighted() {
+    return !tagWeights.isEmpty();
+  }
+
+  /** Returns the largest weight a video can have. */
+  double maxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * Returns the weights by the catalog's tag ids, NaN for tags without one.
+   * Callers hold the catalog's read lock.
+   */
+  synchronized double[] weightsByTagId(VideoCatalog catalog) {
+    if (weightsCatalog != catalog) {
+      weightsCatalog = catalog;
+      weightsByTagId = new double[0];
+    }
+    int known = weightsByTagId.length;
+    if (known < catalog.distinctTags()) {
+      double[] weights = Arrays.copyOf(weightsByTagId, catalog.distinctTags());
+      for (int tag = known; tag < weights.length; tag++) {
+        weights[tag] = tagWeights.getOrDefault(catalog.tagName(tag).toLowerCase(Locale.ROOT), Double.NaN);
+      }
+      weightsByTagId = weights;
+    }
+    return weightsByTagId;
+  }
+}
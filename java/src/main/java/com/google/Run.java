@@ -1,5 +1,7 @@
 package com.google;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Scanner;
 
@@ -7,7 +9,19 @@ public class Run {
   public static void main(String[] args){
     System.out.println("Hello and welcome to YouTube, what would you like to do? "
         + "Enter HELP for list of available commands or EXIT to terminate.");
-    var videoPlayer = new VideoPlayer();
+    // output is held back until each command is done, the parser writes it out
+    var out = new OutputSink.Buffered(System.out);
+    var videoLibrary = new VideoLibrary();
+    if (Boolean.getBoolean(VideoLibrary.WATCH_PROPERTY)) {
+      try {
+        videoLibrary.watch();
+      } catch (IOException e) {
+        System.out.println("Couldn't watch videos.txt for changes");
+      }
+    }
+    var limits = PlaylistLimits.fromSystemProperties();
+    var playlistLibrary = openPlaylistLibrary(videoLibrary, limits, out);
+    var videoPlayer = new VideoPlayer(videoLibrary, playlistLibrary, out, RandomPlayback.fromSystemProperties());
     var parser = new CommandParser(videoPlayer);
     var scanner = new Scanner(System.in);
     while (true) {
@@ -16,9 +30,31 @@ public class Run {
       if (input.equalsIgnoreCase("exit")) {
         System.out.println("YouTube has now terminated its execution. " +
             "Thank you and goodbye!");
+        try {
+          playlistLibrary.close();
+        } catch (IOException e) {
+          System.out.println("Couldn't close the playlist log");
+        }
         return;
       }
       parser.executeCommand(Arrays.asList(input.split("\\s+")));
     }
   }
+
+  /**
+   * Opens the playlists saved to the log named by a system property, or keeps
+   * them in memory if there is none or it can't be opened.
+   */
+  private static PlaylistLibrary openPlaylistLibrary(VideoLibrary videoLibrary, PlaylistLimits limits,
+      OutputSink out) {
+    String log = System.getProperty(PlaylistLibrary.LOG_PROPERTY);
+    if (log != null) {
+      try {
+        return new PlaylistLibrary(videoLibrary, Path.of(log), limits, out);
+      } catch (IOException e) {
+        System.out.println("Couldn't open the playlist log, playlists will not be saved");
+      }
+    }
+    return new PlaylistLibrary(videoLibrary, limits, out);
+  }
 }
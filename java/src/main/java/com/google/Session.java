@@ -0,0 +1,65 @@
+package com.google;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A class used to hold one viewer's session: a player of its own, keeping
+ * what the viewer is playing, over the libraries every session shares, and
+ * the tail of the queue of its commands. Commands of one session run one
+ * at a time and in the order they were given; different sessions run at
+ * once.
+ */
+final class Session {
+
+  private final String id;
+  private final VideoPlayer player;
+  private final CommandParser parser;
+  // completes once the last command queued has run
+  private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+  Session(String id, VideoPlayer player) {
+    this.id = id;
+    this.player = player;
+    this.parser = new CommandParser(player);
+  }
+
+  String getId() {
+    return id;
+  }
+
+  VideoPlayer getPlayer() {
+    return player;
+  }
+
+  /**
+   * Queues a command to run on the executor after the commands queued before it. Returns a
+   * future completing once it has run; a command that fails doesn't stop the ones after it.
+   */
+  CompletableFuture<Void> submit(List<String> command, Executor executor) {
+    return enqueue(() -> parser.executeCommand(command), executor);
+  }
+
+  /**
+   * Queues a stop of the given video, if it is the one the session is playing or has paused
+   * by the time the commands queued before it have run. Returns a future completing once it has.
+   */
+  CompletableFuture<Void> stopVideoIfCurrent(String videoId, Executor executor) {
+    return enqueue(() -> {
+      player.stopVideoIfCurrent(videoId);
+      player.flush();
+    }, executor);
+  }
+
+  private synchronized CompletableFuture<Void> enqueue(Runnable task, Executor executor) {
+    CompletableFuture<Void> done = tail.exceptionally(e -> null).thenRunAsync(task, executor);
+    tail = done;
+    return done;
+  }
+
+  /** Returns a future completing once every command queued so far has run. */
+  synchronized CompletableFuture<Void> idle() {
+    return tail.exceptionally(e -> null);
+  }
+}
@@ -0,0 +1,141 @@
+package com.google;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A class used to serve many viewers from one process. Every session has its
+ * own player, so what one viewer plays or pauses doesn't touch another, while
+ * all of them share one {@link VideoLibrary} and one {@link PlaylistLibrary},
+ * each session seeing the playlists of its owner. Commands are routed by
+ * session id and run on virtual threads where the JVM has them (Java 21 and
+ * later), and on a fixed pool of platform threads before that. What every
+ * session plays is published to one {@link PlaybackEvents} stream, and a
+ * video flagged in any session is stopped in every session watching it.
+ */
+final class SessionManager implements AutoCloseable {
+
+  /** Platform threads per core when there are no virtual threads; commands may wait on the playlist log. */
+  static final int THREADS_PER_CORE = 4;
+
+  private final VideoLibrary videoLibrary;
+  private final PlaylistLibrary playlistLibrary;
+  private final RandomPlayback randomPlayback;
+  private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+  private final ExecutorService executor;
+  private final boolean virtualThreads;
+  // the playback events of every session
+  private final PlaybackEvents events = new PlaybackEvents(PlaybackEvents.DEFAULT_CAPACITY);
+  private final Consumer<String> stopFlagged = this::stopFlagged;
+
+  SessionManager(VideoLibrary videoLibrary, PlaylistLibrary playlistLibrary, RandomPlayback randomPlayback) {
+    this.videoLibrary = videoLibrary;
+    this.playlistLibrary = playlistLibrary;
+    this.randomPlayback = randomPlayback;
+    ExecutorService virtual = newVirtualThreadExecutor();
+    this.virtualThreads = virtual != null;
+    this.executor = virtual != null ? virtual : newPlatformThreadExecutor();
+    videoLibrary.addFlagListener(stopFlagged);
+  }
+
+  /*
+    looked up by reflection, so the code still builds for Java 11
+  */
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private static ExecutorService newPlatformThreadExecutor() {
+    AtomicInteger threads = new AtomicInteger();
+    return Executors.newFixedThreadPool(THREADS_PER_CORE * Runtime.getRuntime().availableProcessors(), task -> {
+      Thread thread = new Thread(task, "session-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /*
+    a session's player is only touched by its own commands, so the stop is queued behind them in
+    every session rather than checked here; sessions not watching the video do nothing
+  */
+  private void stopFlagged(String videoId) {
+    for (Session session : sessions.values()) {
+      session.stopVideoIfCurrent(videoId, executor);
+    }
+  }
+
+  /** Returns the stream the playback events of every session are published to. */
+  PlaybackEvents getEvents() {
+    return events;
+  }
+
+  /** Returns whether commands run on virtual threads. */
+  boolean usesVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /**
+   * Opens a session for an owner's playlists, writing its output to the given sink. A session
+   * can't be asked questions, so searches never play a result. Returns null if a session with
+   * the id is already open.
+   */
+  Session open(String sessionId, String owner, OutputSink out) {
+    VideoPlayer player = new VideoPlayer(videoLibrary, playlistLibrary.forOwner(owner, out), out, randomPlayback,
+        () -> null, new PlaybackHistory(sessionId, events));
+    Session session = new Session(sessionId, player);
+    return sessions.putIfAbsent(sessionId, session) == null ? session : null;
+  }
+
+  /** Returns the open session with the given id, or null if there is none. */
+  Session get(String sessionId) {
+    return sessions.get(sessionId);
+  }
+
+  int size() {
+    return sessions.size();
+  }
+
+  /**
+   * Queues a command for a session. Returns a future completing once it has run, or null if
+   * there is no open session with the id.
+   */
+  CompletableFuture<Void> execute(String sessionId, List<String> command) {
+    Session session = sessions.get(sessionId);
+    return session == null ? null : session.submit(command, executor);
+  }
+
+  /**
+   * Closes a session; commands already queued still run. Returns a future completing once they
+   * have, or null if there is no open session with the id.
+   */
+  CompletableFuture<Void> close(String sessionId) {
+    Session session = sessions.remove(sessionId);
+    return session == null ? null : session.idle();
+  }
+
+  /**
+   * Closes every session and waits for the commands already queued to run. If the wait is
+   * interrupted, returns with the thread's interrupt status set and leaves them to finish.
+   */
+  @Override
+  public void close() {
+    videoLibrary.removeFlagListener(stopFlagged);
+    sessions.clear();
+    executor.shutdown();
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.google;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A class used to find videos by tag. Every tag maps to a bitmap of the
+ * ordinals of the videos carrying it, so compound tag queries are answered
+ * with bitmap operations instead of catalog scans.
+ */
+class TagIndex {
+
+  private static final BitSet EMPTY = new BitSet();
+
+  private final HashMap<String, BitSet> postings = new HashMap<>();
+  private int size;
+
+  /** Indexes the tags of the video with the given ordinal. */
+  void add(int ordinal, List<String> tags) {
+    for (String tag : tags) {
+      postings.computeIfAbsent(normalize(tag), k -> new BitSet()).set(ordinal);
+    }
+    size = Math.max(size, ordinal + 1);
+  }
+
+  /** Removes the video with the given ordinal, which must have been indexed with the given tags. */
+  void remove(int ordinal, List<String> tags) {
+    for (String tag : tags) {
+      BitSet bitmap = postings.get(normalize(tag));
+      if (bitmap != null) {
+        bitmap.clear(ordinal);
+      }
+    }
+  }
+
+  /** Returns the bitmap of videos carrying the tag, ignoring case. Must not be modified. */
+  BitSet get(String tag) {
+    BitSet bitmap = postings.get(normalize(tag));
+    return bitmap != null ? bitmap : EMPTY;
+  }
+
+  /**
+   * Evaluates a tag query such as "#cat AND #animal NOT #dog". Terms are
+   * combined from left to right; AND is implied between adjacent terms and
+   * NOT negates the term that follows it. Returns a new bitmap.
+   */
+  BitSet evaluate(List<String> query) {
+    BitSet result = null;
+    boolean or = false;
+    boolean not = false;
+    for (String term : query) {
+      switch (term.toUpperCase(Locale.ROOT)) {
+        case "AND":
+          or = false;
+          continue;
+        case "OR":
+          or = true;
+          continue;
+        case "NOT":
+          not = !not;
+          continue;
+        default:
+          break;
+      }
+
+      BitSet operand = get(term);
+      if (result == null) {
+        result = not ? complement(operand) : (BitSet) operand.clone();
+      } else if (or) {
+        result.or(not ? complement(operand) : operand);
+      } else if (not) {
+        result.andNot(operand);
+      } else {
+        result.and(operand);
+      }
+      or = false;
+      not = false;
+    }
+    return result != null ? result : new BitSet();
+  }
+
+  private BitSet complement(BitSet bitmap) {
+    BitSet complement = new BitSet(size);
+    complement.set(0, size);
+    complement.andNot(bitmap);
+    return complement;
+  }
+
+  private static String normalize(String tag) {
+    return tag.toLowerCase(Locale.ROOT);
+  }
+}
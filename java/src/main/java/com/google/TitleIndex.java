@@ -0,0 +1,118 @@
+package com.google;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A class used to find the videos whose title contains a search term. Every
+ * lower-cased title is split into overlapping trigrams, and each trigram keeps
+ * an ascending posting list of video ordinals.
+ */
+class TitleIndex {
+
+  private static final int GRAM = 3;
+
+  private final HashMap<Long, IntList> postings = new HashMap<>();
+
+  /** Indexes the title of the video with the given ordinal. */
+  void add(int ordinal, String title) {
+    String folded = title.toLowerCase();
+    for (int i = 0; i + GRAM <= folded.length(); i++) {
+      postings.computeIfAbsent(key(folded, i), k -> new IntList()).insert(ordinal);
+    }
+  }
+
+  /** Removes the video with the given ordinal, which must have been indexed with the given title. */
+  void remove(int ordinal, String title) {
+    String folded = title.toLowerCase();
+    for (int i = 0; i + GRAM <= folded.length(); i++) {
+      long key = key(folded, i);
+      IntList list = postings.get(key);
+      if (list != null && list.delete(ordinal) && list.size == 0) {
+        postings.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Returns the ascending ordinals that may contain the search term. Every
+   * match is returned, but callers must still verify the candidates. Terms
+   * shorter than a trigram cannot be narrowed and return null.
+   */
+  int[] candidates(String searchTerm) {
+    String folded = searchTerm.toLowerCase();
+    if (folded.length() < GRAM) {
+      return null;
+    }
+
+    IntList[] lists = new IntList[folded.length() - GRAM + 1];
+    for (int i = 0; i < lists.length; i++) {
+      IntList list = postings.get(key(folded, i));
+      if (list == null) {
+        return new int[0];
+      }
+      lists[i] = list;
+    }
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+    int[] result = Arrays.copyOf(lists[0].values, lists[0].size);
+    int length = result.length;
+    for (int i = 1; i < lists.length && length > 0; i++) {
+      length = intersect(result, length, lists[i]);
+    }
+    return Arrays.copyOf(result, length);
+  }
+
+  /** Intersects the first length values of result with the list in place and returns the new length. */
+  private static int intersect(int[] result, int length, IntList list) {
+    int kept = 0;
+    int j = 0;
+    for (int i = 0; i < length && j < list.size; i++) {
+      while (j < list.size && list.values[j] < result[i]) {
+        j++;
+      }
+      if (j < list.size && list.values[j] == result[i]) {
+        result[kept++] = result[i];
+      }
+    }
+    return kept;
+  }
+
+  private static long key(String folded, int from) {
+    return ((long) folded.charAt(from) << 32)
+        | ((long) folded.charAt(from + 1) << 16)
+        | folded.charAt(from + 2);
+  }
+
+  /** A growable, ascending array of distinct ints, used for the posting lists. */
+  private static final class IntList {
+    int[] values = new int[4];
+    int size;
+
+    /** Inserts the value in order, unless it is already present. Appending is O(1). */
+    void insert(int value) {
+      int index = size > 0 && values[size - 1] < value ? size : Arrays.binarySearch(values, 0, size, value);
+      if (index >= 0 && index < size) {
+        return;
+      }
+      index = index < 0 ? -index - 1 : index;
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      System.arraycopy(values, index, values, index + 1, size - index);
+      values[index] = value;
+      size++;
+    }
+
+    /** Deletes the value and returns whether it was present. */
+    boolean delete(int value) {
+      int index = Arrays.binarySearch(values, 0, size, value);
+      if (index < 0) {
+        return false;
+      }
+      System.arraycopy(values, index + 1, values, index, size - index - 1);
+      size--;
+      return true;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package com.google;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A class used to keep the catalog ordered by title. Ordinals live in a skip
+ * list ordered by the catalog's title (then id) columns, so adding or removing
+ * a video is O(log n) and listings walk the videos in order without copying
+ * or sorting.
+ */
+class TitleOrder implements Iterable<Integer> {
+
+  private final ConcurrentSkipListSet<Integer> ordinals;
+
+  TitleOrder(VideoCatalog catalog) {
+    this.ordinals = new ConcurrentSkipListSet<>(catalog::compareByTitle);
+  }
+
+  /** Adds the video with the given ordinal. Its title must not change while it is in the order. */
+  void add(int ordinal) {
+    ordinals.add(ordinal);
+  }
+
+  /** Removes the video with the given ordinal. */
+  void remove(int ordinal) {
+    ordinals.remove(ordinal);
+  }
+
+  int size() {
+    return ordinals.size();
+  }
+
+  /** Returns the video ordinals in title order. */
+  @Override
+  public Iterator<Integer> iterator() {
+    return ordinals.iterator();
+  }
+
+  /**
+   * Returns the video ordinals in title order, starting after the given video. Finding the
+   * start is O(log n); the ordinal doesn't have to be in the order itself.
+   */
+  Iterable<Integer> after(int ordinal) {
+    return ordinals.tailSet(ordinal, false);
+  }
+}
@@ -1,50 +1,96 @@
 package com.google;
 
-import com.google.inject.internal.Nullable;
-
-import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
-/** A class used to represent a video. */
+/**
+ * A class used to represent a video. It is a lightweight view over one row of a
+ * {@link VideoCatalog}, read under the catalog's lock so a reload never shows a half-updated row.
+ */
 class Video {
 
-  private final String title;
-  private final String videoId;
-  private final List<String> tags;
-  private final Boolean flagged;
-  private final String flaggedReason;
+  private final VideoCatalog catalog;
+  private final int ordinal;
+
+  Video(VideoCatalog catalog, int ordinal) {
+    this.catalog = catalog;
+    this.ordinal = ordinal;
+  }
 
-  Video(String title, String videoId, List<String> tags, @Nullable Boolean flagged,
-        @Nullable String flaggedReason) {
-    this.title = title;
-    this.videoId = videoId;
-    this.tags = Collections.unmodifiableList(tags);
-    this.flagged = flagged;
-    this.flaggedReason = flaggedReason;
+  /** Returns the ordinal of the video within its catalog. */
+  int getOrdinal() {
+    return ordinal;
   }
 
   /** Returns the title of the video. */
   String getTitle() {
-    return title;
+    catalog.lock().readLock().lock();
+    try {
+      return catalog.title(ordinal);
+    } finally {
+      catalog.lock().readLock().unlock();
+    }
   }
 
   /** Returns the video id of the video. */
   String getVideoId() {
-    return videoId;
+    catalog.lock().readLock().lock();
+    try {
+      return catalog.videoId(ordinal);
+    } finally {
+      catalog.lock().readLock().unlock();
+    }
   }
 
   /** Returns a readonly collection of the tags of the video. */
   List<String> getTags() {
-    return tags;
+    catalog.lock().readLock().lock();
+    try {
+      return catalog.tags(ordinal);
+    } finally {
+      catalog.lock().readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns how the video is listed, e.g. "Amazing Cats (amazing_cats_video_id) [#cat #animal]". The line is
+   * rendered once and reused; the flag state isn't part of it, since it changes on its own.
+   */
+  String getDisplay() {
+    catalog.lock().readLock().lock();
+    try {
+      return catalog.display(ordinal);
+    } finally {
+      catalog.lock().readLock().unlock();
+    }
   }
 
   public String getFlaggedReason() {
-    return flaggedReason;
+    catalog.lock().readLock().lock();
+    try {
+      return catalog.flags().reason(ordinal);
+    } finally {
+      catalog.lock().readLock().unlock();
+    }
   }
 
   public boolean getFlagged() {
-    return flagged;
+    catalog.lock().readLock().lock();
+    try {
+      return catalog.flags().isFlagged(ordinal);
+    } finally {
+      catalog.lock().readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof Video
+        && ((Video) other).catalog == catalog && ((Video) other).ordinal == ordinal;
+  }
+
+  @Override
+  public int hashCode() {
+    return ordinal;
   }
 }
 
@@ -0,0 +1,686 @@
+package com.google;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A class used to store the videos of a library as columns. Titles and ids
+ * live in shared char arenas, tags are interned into an int dictionary and
+ * kept as runs of tag ids, and the flag state sits in a {@link FlagTable}.
+ * Every video is addressed by its ordinal; {@link Video} objects are views
+ * over a row.
+ *
+ * <p>Columns are buffers: a catalog read from a snapshot keeps them as
+ * read-only views of the mapped file, and a column is only copied to the heap
+ * the first time a change writes to it. Columns on the heap always have an
+ * array behind them.
+ */
+class VideoCatalog {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private CharBuffer titleChars = chars(INITIAL_CAPACITY * 16);
+  private int titleCharsSize;
+  private IntBuffer titleStart = ints(INITIAL_CAPACITY);
+  private IntBuffer titleLength = ints(INITIAL_CAPACITY);
+
+  private CharBuffer idChars = chars(INITIAL_CAPACITY * 16);
+  private int idCharsSize;
+  private IntBuffer idStart = ints(INITIAL_CAPACITY);
+  private IntBuffer idLength = ints(INITIAL_CAPACITY);
+
+  private IntBuffer tagIds = ints(INITIAL_CAPACITY * 2);
+  private int tagIdsSize;
+  private IntBuffer tagStart = ints(INITIAL_CAPACITY);
+  private IntBuffer tagCount = ints(INITIAL_CAPACITY);
+
+  // title chars and tag ids no row points at any more, left behind by replaced rows; once more of an
+  // arena is dead than live it is compacted
+  private int deadTitleChars;
+  private int deadTagIds;
+
+  private final List<String> tagNames = new ArrayList<>();
+  private final HashMap<String, Integer> tagDictionary = new HashMap<>();
+
+  // the display line of each row, rendered on first use; dropped whenever the row is replaced. null
+  // until a line is first rendered, so a mapped catalog doesn't allocate a slot per row on start
+  private String[] display;
+
+  private final FlagTable flags = new FlagTable();
+  private BitSet removed = new BitSet();
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** Open-addressing table from id hash to ordinal + 1; 0 marks an empty slot. */
+  private IntBuffer idTable = ints(INITIAL_CAPACITY * 2);
+  private int size;
+
+  /**
+   * Adds a video and returns its ordinal. If a video with the same id already
+   * exists, or existed and was removed, its title and tags are replaced and
+   * its ordinal is kept.
+   */
+  int add(String title, String videoId, List<String> tags) {
+    int ordinal = find(videoId);
+    if (ordinal >= 0) {
+      removed.clear(ordinal);
+    } else {
+      ordinal = newRow(videoId.length());
+      videoId.getChars(0, videoId.length(), idChars.array(), idStart.get(ordinal));
+      insertId(ordinal, videoId.hashCode());
+    }
+
+    clearDisplay(ordinal);
+    int titleAt = placeTitle(ordinal, title.length());
+    title.getChars(0, title.length(), titleChars.array(), titleAt);
+
+    int tagAt = placeTags(ordinal, tags.size());
+    int[] ids = tagIds.array();
+    for (String tag : tags) {
+      ids[tagAt++] = internTag(tag);
+    }
+    compactIfMostlyDead();
+    return ordinal;
+  }
+
+  /**
+   * Adds every video of the other catalog, in its ordinal order, exactly as if
+   * each had been passed to {@link #add}. Rows are copied between the arenas
+   * without building strings.
+   */
+  void addAll(VideoCatalog other) {
+    int[] tagMapping = new int[other.tagNames.size()];
+    for (int tag = 0; tag < tagMapping.length; tag++) {
+      tagMapping[tag] = internTag(other.tagNames.get(tag));
+    }
+
+    for (int row = 0; row < other.size; row++) {
+      int otherIdStart = other.idStart.get(row);
+      int otherIdLength = other.idLength.get(row);
+      int hash = hash(other.idChars, otherIdStart, otherIdLength);
+      int ordinal = find(other.idChars, otherIdStart, otherIdLength, hash);
+      if (ordinal >= 0) {
+        removed.clear(ordinal);
+      } else {
+        ordinal = newRow(otherIdLength);
+        copy(other.idChars, otherIdStart, idChars, idStart.get(ordinal), otherIdLength);
+        insertId(ordinal, hash);
+      }
+
+      clearDisplay(ordinal);
+      int titleAt = placeTitle(ordinal, other.titleLength.get(row));
+      copy(other.titleChars, other.titleStart.get(row), titleChars, titleAt, other.titleLength.get(row));
+
+      int tagAt = placeTags(ordinal, other.tagCount.get(row));
+      int otherTagStart = other.tagStart.get(row);
+      for (int i = 0; i < other.tagCount.get(row); i++) {
+        tagIds.put(tagAt + i, tagMapping[other.tagIds.get(otherTagStart + i)]);
+      }
+    }
+    compactIfMostlyDead();
+  }
+
+  /**
+   * Sets the length of a row's title and returns where its chars go: over the old title if the new
+   * one fits, otherwise at the end of the arena, leaving the old chars dead.
+   */
+  private int placeTitle(int ordinal, int length) {
+    int oldLength = titleLength.get(ordinal);
+    titleLength = writable(titleLength, 0);
+    titleLength.put(ordinal, length);
+    if (length <= oldLength) {
+      deadTitleChars += oldLength - length;
+      titleChars = writable(titleChars, 0);
+      return titleStart.get(ordinal);
+    }
+    deadTitleChars += oldLength;
+    titleChars = writable(titleChars, titleCharsSize + length);
+    titleStart = writable(titleStart, 0);
+    titleStart.put(ordinal, titleCharsSize);
+    titleCharsSize += length;
+    return titleStart.get(ordinal);
+  }
+
+  /** Sets the number of a row's tags and returns where their ids go, as {@link #placeTitle} does. */
+  private int placeTags(int ordinal, int count) {
+    int oldCount = tagCount.get(ordinal);
+    tagCount = writable(tagCount, 0);
+    tagCount.put(ordinal, count);
+    if (count <= oldCount) {
+      deadTagIds += oldCount - count;
+      tagIds = writable(tagIds, 0);
+      return tagStart.get(ordinal);
+    }
+    deadTagIds += oldCount;
+    tagIds = writable(tagIds, tagIdsSize + count);
+    tagStart = writable(tagStart, 0);
+    tagStart.put(ordinal, tagIdsSize);
+    tagIdsSize += count;
+    return tagStart.get(ordinal);
+  }
+
+  /**
+   * Copies the titles, or the tags, of every row into a fresh arena once more of the old one is
+   * dead than live, so replacing rows again and again, as reloads do, can't grow the arenas for
+   * ever. Callers hold the write lock.
+   */
+  private void compactIfMostlyDead() {
+    if (deadTitleChars > titleCharsSize - deadTitleChars) {
+      CharBuffer chars = chars(Math.max(INITIAL_CAPACITY * 16, 2 * (titleCharsSize - deadTitleChars)));
+      titleStart = writable(titleStart, 0);
+      int charsSize = 0;
+      for (int row = 0; row < size; row++) {
+        copy(titleChars, titleStart.get(row), chars, charsSize, titleLength.get(row));
+        titleStart.put(row, charsSize);
+        charsSize += titleLength.get(row);
+      }
+      titleChars = chars;
+      titleCharsSize = charsSize;
+      deadTitleChars = 0;
+    }
+    if (deadTagIds > tagIdsSize - deadTagIds) {
+      int[] ids = new int[Math.max(INITIAL_CAPACITY * 2, 2 * (tagIdsSize - deadTagIds))];
+      int[] oldIds = tagIds.array();
+      tagStart = writable(tagStart, 0);
+      int idsSize = 0;
+      for (int row = 0; row < size; row++) {
+        System.arraycopy(oldIds, tagStart.get(row), ids, idsSize, tagCount.get(row));
+        tagStart.put(row, idsSize);
+        idsSize += tagCount.get(row);
+      }
+      tagIds = IntBuffer.wrap(ids);
+      tagIdsSize = idsSize;
+      deadTagIds = 0;
+    }
+  }
+
+  /** Returns the number of title chars and tag ids the arenas hold, dead or live. */
+  int arenaSize() {
+    return titleCharsSize + tagIdsSize;
+  }
+
+  /** Adds a row with room for an id of the given length at the end of the id arena. */
+  private int newRow(int idLength) {
+    ensureRowCapacity(size + 1);
+    int ordinal = size++;
+    idChars = writable(idChars, idCharsSize + idLength);
+    idStart = writable(idStart, 0);
+    idStart.put(ordinal, idCharsSize);
+    this.idLength = writable(this.idLength, 0);
+    this.idLength.put(ordinal, idLength);
+    idCharsSize += idLength;
+    return ordinal;
+  }
+
+  private void clearDisplay(int ordinal) {
+    if (display != null) {
+      display[ordinal] = null;
+    }
+  }
+
+  /** Returns the number of ordinals handed out, including those of removed videos. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the number of videos that have not been removed. */
+  int liveCount() {
+    return size - removed.cardinality();
+  }
+
+  /**
+   * Removes the video with the given ordinal. Its row is kept, so views and
+   * references to the ordinal stay readable, and adding the id again revives it.
+   */
+  void remove(int ordinal) {
+    removed.set(ordinal);
+  }
+
+  boolean isRemoved(int ordinal) {
+    return removed.get(ordinal);
+  }
+
+  /** Returns the ordinals of removed videos. Must not be modified. */
+  BitSet removed() {
+    return removed;
+  }
+
+  /**
+   * Returns the lock guarding the catalog. Readers that touch several columns
+   * hold the read lock; every mutation holds the write lock.
+   */
+  ReentrantReadWriteLock lock() {
+    return lock;
+  }
+
+  /**
+   * Returns the ordinal of the video with the given id, removed or not. An id
+   * the catalog has never had gets a removed row with no title or tags, so it
+   * can be referenced now and is revived if the video is added later.
+   */
+  int reserve(String videoId) {
+    int ordinal = find(videoId);
+    if (ordinal < 0) {
+      ordinal = add("", videoId, List.of());
+      removed.set(ordinal);
+    }
+    return ordinal;
+  }
+
+  /** Returns the ordinal of the video with the given id, or -1 if there is none. */
+  int ordinalOf(String videoId) {
+    int ordinal = find(videoId);
+    return ordinal >= 0 && !removed.get(ordinal) ? ordinal : -1;
+  }
+
+  /** Returns whether the video has the same title and tags as the given row of the other catalog. */
+  boolean sameRow(int ordinal, VideoCatalog other, int row) {
+    if (titleLength.get(ordinal) != other.titleLength.get(row) || tagCount.get(ordinal) != other.tagCount.get(row)
+        || !equals(titleChars, titleStart.get(ordinal), other.titleChars, other.titleStart.get(row),
+            titleLength.get(ordinal))) {
+      return false;
+    }
+    for (int i = 0; i < tagCount.get(ordinal); i++) {
+      if (!tagNames.get(tagIds.get(tagStart.get(ordinal) + i))
+          .equals(other.tagNames.get(other.tagIds.get(other.tagStart.get(row) + i)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int find(String videoId) {
+    int mask = idTable.capacity() - 1;
+    for (int slot = spread(videoId.hashCode()) & mask; idTable.get(slot) != 0; slot = (slot + 1) & mask) {
+      int ordinal = idTable.get(slot) - 1;
+      if (idEquals(ordinal, videoId)) {
+        return ordinal;
+      }
+    }
+    return -1;
+  }
+
+  private int find(CharBuffer chars, int start, int length, int hash) {
+    int mask = idTable.capacity() - 1;
+    for (int slot = spread(hash) & mask; idTable.get(slot) != 0; slot = (slot + 1) & mask) {
+      int ordinal = idTable.get(slot) - 1;
+      if (idLength.get(ordinal) == length && equals(idChars, idStart.get(ordinal), chars, start, length)) {
+        return ordinal;
+      }
+    }
+    return -1;
+  }
+
+  String title(int ordinal) {
+    return string(titleChars, titleStart.get(ordinal), titleLength.get(ordinal));
+  }
+
+  String videoId(int ordinal) {
+    return string(idChars, idStart.get(ordinal), idLength.get(ordinal));
+  }
+
+  /** Returns a readonly list of the tags of the video. */
+  List<String> tags(int ordinal) {
+    String[] tags = new String[tagCount.get(ordinal)];
+    int start = tagStart.get(ordinal);
+    for (int i = 0; i < tags.length; i++) {
+      tags[i] = tagNames.get(tagIds.get(start + i));
+    }
+    return List.of(tags);
+  }
+
+  /**
+   * Returns how the video is listed: its title, id and tags, as in
+   * "Amazing Cats (amazing_cats_video_id) [#cat #animal]". The line is built
+   * from the columns the first time and kept until the row is replaced.
+   * Callers hold the read lock; readers racing to fill a row store equal lines.
+   */
+  String display(int ordinal) {
+    String[] lines = display;
+    if (lines == null) {
+      lines = new String[titleStart.capacity()];
+      display = lines;
+    }
+    String line = lines[ordinal];
+    if (line == null) {
+      int titleAt = titleStart.get(ordinal);
+      int idAt = idStart.get(ordinal);
+      int tagAt = tagStart.get(ordinal);
+      StringBuilder builder = new StringBuilder(
+          titleLength.get(ordinal) + idLength.get(ordinal) + 8 * tagCount.get(ordinal) + 5);
+      append(builder, titleChars, titleAt, titleLength.get(ordinal)).append(" (");
+      append(builder, idChars, idAt, idLength.get(ordinal)).append(") [");
+      for (int i = 0; i < tagCount.get(ordinal); i++) {
+        if (i > 0) {
+          builder.append(' ');
+        }
+        builder.append(tagNames.get(tagIds.get(tagAt + i)));
+      }
+      line = builder.append(']').toString();
+      lines[ordinal] = line;
+    }
+    return line;
+  }
+
+  /** Returns the number of distinct tags; tag ids run from 0 to one less. */
+  int distinctTags() {
+    return tagNames.size();
+  }
+
+  String tagName(int tagId) {
+    return tagNames.get(tagId);
+  }
+
+  /**
+   * Returns the largest of the weights of the video's tags, given by tag id
+   * with NaN for tags without one, or the given weight if none of its tags
+   * has one.
+   */
+  double weight(int ordinal, double[] weightsByTagId, double otherwise) {
+    double weight = Double.NaN;
+    int start = tagStart.get(ordinal);
+    for (int i = 0; i < tagCount.get(ordinal); i++) {
+      double tagWeight = weightsByTagId[tagIds.get(start + i)];
+      if (!Double.isNaN(tagWeight) && !(tagWeight <= weight)) {
+        weight = tagWeight;
+      }
+    }
+    return Double.isNaN(weight) ? otherwise : weight;
+  }
+
+  /** Returns the flag state of the videos, keyed by ordinal. */
+  FlagTable flags() {
+    return flags;
+  }
+
+  /** Compares two videos by title, then by id, without materializing either string. */
+  int compareByTitle(int a, int b) {
+    int compare = compare(titleChars, titleStart.get(a), titleLength.get(a), titleStart.get(b), titleLength.get(b));
+    return compare != 0 ? compare
+        : compare(idChars, idStart.get(a), idLength.get(a), idStart.get(b), idLength.get(b));
+  }
+
+  private static int compare(CharBuffer chars, int aStart, int aLength, int bStart, int bLength) {
+    int length = Math.min(aLength, bLength);
+    if (chars.hasArray()) {
+      char[] array = chars.array();
+      int a = chars.arrayOffset() + aStart;
+      int b = chars.arrayOffset() + bStart;
+      int mismatch = Arrays.mismatch(array, a, a + length, array, b, b + length);
+      return mismatch >= 0 ? array[a + mismatch] - array[b + mismatch] : aLength - bLength;
+    }
+    for (int i = 0; i < length; i++) {
+      char a = chars.get(aStart + i);
+      char b = chars.get(bStart + i);
+      if (a != b) {
+        return a - b;
+      }
+    }
+    return aLength - bLength;
+  }
+
+  /** Returns the number of bytes {@link #writeTo} needs. */
+  long serializedSize() {
+    long bytes = 4L * 13 + 8L * removed.toLongArray().length;
+    bytes += 2L * titleCharsSize + 2L * idCharsSize;
+    bytes += 4L * 6 * size + 4L * tagIdsSize + 4L * idTable.capacity();
+    for (String tag : tagNames) {
+      bytes += 4 + 2L * tag.length();
+    }
+    return bytes;
+  }
+
+  /** Writes the columns to the buffer, in the layout {@link #readFrom} expects. */
+  void writeTo(ByteBuffer buffer) {
+    buffer.putInt(size);
+    putChars(buffer, titleChars, titleCharsSize);
+    putInts(buffer, titleStart, size);
+    putInts(buffer, titleLength, size);
+    putChars(buffer, idChars, idCharsSize);
+    putInts(buffer, idStart, size);
+    putInts(buffer, idLength, size);
+    putInts(buffer, idTable, idTable.capacity());
+    buffer.putInt(tagNames.size());
+    for (String tag : tagNames) {
+      buffer.putInt(tag.length());
+      buffer.asCharBuffer().put(tag);
+      buffer.position(buffer.position() + 2 * tag.length());
+    }
+    putInts(buffer, tagIds, tagIdsSize);
+    putInts(buffer, tagStart, size);
+    putInts(buffer, tagCount, size);
+    long[] removedWords = removed.toLongArray();
+    buffer.putInt(removedWords.length);
+    buffer.asLongBuffer().put(removedWords);
+    buffer.position(buffer.position() + 8 * removedWords.length);
+  }
+
+  /**
+   * Reads columns written by {@link #writeTo}. Flag state is not part of the columns. The columns
+   * are read-only views of the buffer, so reading costs the same however many videos there are;
+   * only the tag names and the removed bits are copied.
+   */
+  static VideoCatalog readFrom(ByteBuffer buffer) {
+    buffer = buffer.asReadOnlyBuffer();
+    VideoCatalog catalog = new VideoCatalog();
+    catalog.size = buffer.getInt();
+    catalog.titleChars = getChars(buffer);
+    catalog.titleCharsSize = catalog.titleChars.capacity();
+    catalog.titleStart = getInts(buffer);
+    catalog.titleLength = getInts(buffer);
+    catalog.idChars = getChars(buffer);
+    catalog.idCharsSize = catalog.idChars.capacity();
+    catalog.idStart = getInts(buffer);
+    catalog.idLength = getInts(buffer);
+    catalog.idTable = getInts(buffer);
+    int tagNameCount = buffer.getInt();
+    for (int i = 0; i < tagNameCount; i++) {
+      char[] tag = new char[buffer.getInt()];
+      buffer.asCharBuffer().get(tag);
+      buffer.position(buffer.position() + 2 * tag.length);
+      catalog.internTag(new String(tag));
+    }
+    catalog.tagIds = getInts(buffer);
+    catalog.tagIdsSize = catalog.tagIds.capacity();
+    catalog.tagStart = getInts(buffer);
+    catalog.tagCount = getInts(buffer);
+    long[] removedWords = new long[buffer.getInt()];
+    buffer.asLongBuffer().get(removedWords);
+    buffer.position(buffer.position() + 8 * removedWords.length);
+    catalog.removed = BitSet.valueOf(removedWords);
+    return catalog;
+  }
+
+  private static void putChars(ByteBuffer buffer, CharBuffer values, int length) {
+    buffer.putInt(length);
+    CharBuffer written = values.duplicate();
+    written.limit(length);
+    buffer.asCharBuffer().put(written);
+    buffer.position(buffer.position() + 2 * length);
+  }
+
+  private static void putInts(ByteBuffer buffer, IntBuffer values, int length) {
+    buffer.putInt(length);
+    IntBuffer written = values.duplicate();
+    written.limit(length);
+    buffer.asIntBuffer().put(written);
+    buffer.position(buffer.position() + 4 * length);
+  }
+
+  private static CharBuffer getChars(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    return view(buffer, 2 * length).asCharBuffer();
+  }
+
+  private static IntBuffer getInts(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    return view(buffer, 4 * length).asIntBuffer();
+  }
+
+  /** Returns the next bytes of the buffer as a buffer of their own, and moves past them. */
+  private static ByteBuffer view(ByteBuffer buffer, int bytes) {
+    ByteBuffer view = buffer.slice();
+    view.limit(bytes);
+    buffer.position(buffer.position() + bytes);
+    return view;
+  }
+
+  private static CharBuffer chars(int capacity) {
+    return CharBuffer.wrap(new char[capacity]);
+  }
+
+  private static IntBuffer ints(int capacity) {
+    return IntBuffer.wrap(new int[capacity]);
+  }
+
+  /**
+   * Returns the column ready to be written, with room for at least the given number of values: the
+   * column itself if it is on the heap and large enough, otherwise a copy on the heap, grown if it
+   * has to be. This is where a column read from a snapshot is copied, on its first write.
+   */
+  private static CharBuffer writable(CharBuffer column, int capacity) {
+    if (!column.isReadOnly() && column.capacity() >= capacity) {
+      return column;
+    }
+    char[] values = new char[newCapacity(column.capacity(), column.isReadOnly(), capacity)];
+    column.duplicate().get(values, 0, column.capacity());
+    return CharBuffer.wrap(values);
+  }
+
+  private static IntBuffer writable(IntBuffer column, int capacity) {
+    if (!column.isReadOnly() && column.capacity() >= capacity) {
+      return column;
+    }
+    int[] values = new int[newCapacity(column.capacity(), column.isReadOnly(), capacity)];
+    column.duplicate().get(values, 0, column.capacity());
+    return IntBuffer.wrap(values);
+  }
+
+  private static int newCapacity(int current, boolean readOnly, int needed) {
+    return readOnly && current >= needed ? current : Math.max(current * 2, needed);
+  }
+
+  /** Copies chars between columns; the target is writable and large enough. */
+  private static void copy(CharBuffer from, int fromStart, CharBuffer to, int toStart, int length) {
+    if (from.hasArray()) {
+      System.arraycopy(from.array(), from.arrayOffset() + fromStart, to.array(), toStart, length);
+    } else {
+      CharBuffer source = from.duplicate();
+      source.position(fromStart);
+      source.get(to.array(), toStart, length);
+    }
+  }
+
+  /** Returns a range of chars as a string. */
+  private static String string(CharBuffer chars, int start, int length) {
+    if (chars.hasArray()) {
+      return new String(chars.array(), chars.arrayOffset() + start, length);
+    }
+    char[] value = new char[length];
+    CharBuffer source = chars.duplicate();
+    source.position(start);
+    source.get(value);
+    return new String(value);
+  }
+
+  private static StringBuilder append(StringBuilder builder, CharBuffer chars, int start, int length) {
+    if (chars.hasArray()) {
+      return builder.append(chars.array(), chars.arrayOffset() + start, length);
+    }
+    return builder.append(chars, start, start + length);
+  }
+
+  private static boolean equals(CharBuffer a, int aStart, CharBuffer b, int bStart, int length) {
+    if (a.hasArray() && b.hasArray()) {
+      return Arrays.equals(a.array(), a.arrayOffset() + aStart, a.arrayOffset() + aStart + length,
+          b.array(), b.arrayOffset() + bStart, b.arrayOffset() + bStart + length);
+    }
+    for (int i = 0; i < length; i++) {
+      if (a.get(aStart + i) != b.get(bStart + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean idEquals(int ordinal, String videoId) {
+    if (idLength.get(ordinal) != videoId.length()) {
+      return false;
+    }
+    int start = idStart.get(ordinal);
+    for (int i = 0; i < videoId.length(); i++) {
+      if (idChars.get(start + i) != videoId.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Hashes a char range the way {@link String#hashCode} hashes the same chars. */
+  private static int hash(CharBuffer chars, int start, int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + chars.get(start + i);
+    }
+    return hash;
+  }
+
+  private void insertId(int ordinal, int hash) {
+    if (size * 2 > idTable.capacity()) {
+      IntBuffer old = idTable;
+      idTable = ints(old.capacity() * 2);
+      for (int slot = 0; slot < old.capacity(); slot++) {
+        int entry = old.get(slot);
+        if (entry != 0) {
+          place(entry - 1, hash(idChars, idStart.get(entry - 1), idLength.get(entry - 1)));
+        }
+      }
+    }
+    place(ordinal, hash);
+  }
+
+  private void place(int ordinal, int hash) {
+    idTable = writable(idTable, 0);
+    int mask = idTable.capacity() - 1;
+    int slot = spread(hash) & mask;
+    while (idTable.get(slot) != 0) {
+      slot = (slot + 1) & mask;
+    }
+    idTable.put(slot, ordinal + 1);
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private int internTag(String tag) {
+    Integer id = tagDictionary.get(tag);
+    if (id == null) {
+      id = tagNames.size();
+      tagNames.add(tag);
+      tagDictionary.put(tag, id);
+    }
+    return id;
+  }
+
+  private void ensureRowCapacity(int capacity) {
+    if (capacity > titleStart.capacity()) {
+      int newCapacity = Math.max(capacity, titleStart.capacity() * 2);
+      titleStart = writable(titleStart, newCapacity);
+      titleLength = writable(titleLength, newCapacity);
+      idStart = writable(idStart, newCapacity);
+      idLength = writable(idLength, newCapacity);
+      tagStart = writable(tagStart, newCapacity);
+      tagCount = writable(tagCount, newCapacity);
+      if (display != null) {
+        display = Arrays.copyOf(display, newCapacity);
+      }
+    }
+  }
+}
@@ -1,149 +1,683 @@
 package com.google;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * A class used to represent a Video Library.
  */
 class VideoLibrary {
 
-  private final HashMap<String, Video> videos;
+  /** System property naming a snapshot file the default library is cached in. */
+  static final String SNAPSHOT_PROPERTY = "videos.snapshot";
+
+  /** System property that makes {@link Run} reload the catalog whenever videos.txt changes. */
+  static final String WATCH_PROPERTY = "videos.watch";
+
+  /** Catalogs at least this large are parsed on all cores. */
+  static final long PARALLEL_LOAD_THRESHOLD = 16L << 20;
+
+  /** How many weighted random draws are made before falling back to a pass over the weights. */
+  static final int MAX_WEIGHTED_DRAWS = 64;
+
+  private final Path source;
+  private final VideoCatalog catalog;
+  // where messages go when a caller doesn't give its own sink
+  private final OutputSink out;
+  private final ReentrantReadWriteLock lock;
+  private final Object reloadLock = new Object();
+  private volatile TitleIndex titleIndex;
+  private volatile TagIndex tagIndex;
+  private volatile TitleOrder titleOrder;
+  private volatile PlayableIndex playable;
+  // told the id of every video flagged, e.g. so sessions playing it stop
+  private final List<Consumer<String>> flagListeners = new CopyOnWriteArrayList<>();
+
+  private CatalogLoader.Stats loadStats;
 
   VideoLibrary() {
-    this.videos = new HashMap<>();
-    try {
-      File file = new File(this.getClass().getResource("/videos.txt").getFile());
-
-      Scanner scanner = new Scanner(file);
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        String[] split = line.split("\\|");
-        String title = split[0].strip();
-        String id = split[1].strip();
-        List<String> tags;
-        if (split.length > 2) {
-          tags = Arrays.stream(split[2].split(",")).map(String::strip).collect(
-              Collectors.toList());
-        } else {
-          tags = new ArrayList<>();
+    this(new File(VideoLibrary.class.getResource("/videos.txt").getFile()).toPath(),
+        System.getProperty(SNAPSHOT_PROPERTY) != null ? Path.of(System.getProperty(SNAPSHOT_PROPERTY)) : null);
+  }
+
+  VideoLibrary(Path catalog) {
+    this(catalog, null);
+  }
+
+  /**
+   * Creates a library from the catalog at the given path. If a snapshot path is given, a fresh
+   * snapshot is mapped instead of parsing the catalog; a missing, stale or corrupt snapshot is
+   * rebuilt from the text catalog.
+   */
+  VideoLibrary(Path catalog, Path snapshot) {
+    this(catalog, snapshot, OutputSink.console());
+  }
+
+  VideoLibrary(Path catalog, Path snapshot, OutputSink out) {
+    this.out = out;
+    this.source = catalog;
+    this.catalog = load(catalog, snapshot);
+    this.lock = this.catalog.lock();
+  }
+
+  private VideoCatalog load(Path source, Path snapshot) {
+    long start = System.nanoTime();
+    if (snapshot != null) {
+      try {
+        VideoCatalog mapped = CatalogSnapshot.read(snapshot, source);
+        if (mapped != null) {
+          this.loadStats = new CatalogLoader.Stats(mapped.size(), Files.size(snapshot), System.nanoTime() - start);
+          return mapped;
         }
-        this.videos.put(id, new Video(title, id, tags, false, null));
+      } catch (IOException e) {
+        // an unreadable snapshot is rebuilt from the text catalog below
       }
-    } catch (FileNotFoundException e) {
-      System.out.println("Couldn't find videos.txt");
+    }
+
+    VideoCatalog parsed = new VideoCatalog();
+    try {
+      this.loadStats = parse(source, parsed);
+    } catch (IOException e) {
+      this.out.println("Couldn't find videos.txt");
       e.printStackTrace();
+      return parsed;
+    }
+
+    if (snapshot != null) {
+      try {
+        CatalogSnapshot.write(snapshot, source, parsed);
+      } catch (IOException e) {
+        System.err.println("Couldn't write catalog snapshot: " + e.getMessage());
+      }
+    }
+    return parsed;
+  }
+
+  private static CatalogLoader.Stats parse(Path source, VideoCatalog into) throws IOException {
+    if (Files.size(source) >= PARALLEL_LOAD_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+      return CatalogLoader.loadParallel(source, into, ForkJoinPool.commonPool());
+    }
+    return CatalogLoader.load(source, into::add);
+  }
+
+  /*
+    the indexes are built on first use, so a library mapped from a snapshot is ready as soon as
+    its columns are read; callers hold the read lock
+  */
+  private TitleIndex titleIndex() {
+    TitleIndex index = this.titleIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = this.titleIndex;
+        if (index == null) {
+          index = new TitleIndex();
+          for (int ordinal = nextLive(0); ordinal < this.catalog.size(); ordinal = nextLive(ordinal + 1)) {
+            index.add(ordinal, this.catalog.title(ordinal));
+          }
+          this.titleIndex = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  private TagIndex tagIndex() {
+    TagIndex index = this.tagIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = this.tagIndex;
+        if (index == null) {
+          index = new TagIndex();
+          for (int ordinal = nextLive(0); ordinal < this.catalog.size(); ordinal = nextLive(ordinal + 1)) {
+            index.add(ordinal, this.catalog.tags(ordinal));
+          }
+          this.tagIndex = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  private TitleOrder titleOrder() {
+    TitleOrder order = this.titleOrder;
+    if (order == null) {
+      synchronized (this) {
+        order = this.titleOrder;
+        if (order == null) {
+          order = new TitleOrder(this.catalog);
+          for (int ordinal = nextLive(0); ordinal < this.catalog.size(); ordinal = nextLive(ordinal + 1)) {
+            order.add(ordinal);
+          }
+          this.titleOrder = order;
+        }
+      }
+    }
+    return order;
+  }
+
+  private PlayableIndex playable() {
+    PlayableIndex index = this.playable;
+    if (index == null) {
+      synchronized (this) {
+        index = this.playable;
+        if (index == null) {
+          index = new PlayableIndex();
+          FlagTable flags = this.catalog.flags();
+          for (int ordinal = nextLive(0); ordinal < this.catalog.size(); ordinal = nextLive(ordinal + 1)) {
+            if (!flags.isFlagged(ordinal)) {
+              index.add(ordinal);
+            }
+          }
+          this.playable = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  /** Returns the next ordinal at or after the given one that has not been removed. */
+  private int nextLive(int ordinal) {
+    return this.catalog.removed().nextClearBit(ordinal);
+  }
+
+  /**
+   * Returns the throughput figures of the catalog load. Returns null if the catalog could not be read.
+   */
+  CatalogLoader.Stats getLoadStats() {
+    return this.loadStats;
+  }
+
+  /**
+   * Returns the number of title chars and tag ids the catalog holds, including those of replaced rows not yet
+   * compacted away.
+   */
+  int getArenaSize() {
+    this.lock.readLock().lock();
+    try {
+      return this.catalog.arenaSize();
+    } finally {
+      this.lock.readLock().unlock();
     }
   }
 
   List<Video> getVideos() {
-    return new ArrayList<>(this.videos.values());
+    this.lock.readLock().lock();
+    try {
+      List<Video> videoList = new ArrayList<>(this.catalog.liveCount());
+      for (int ordinal = nextLive(0); ordinal < this.catalog.size(); ordinal = nextLive(ordinal + 1)) {
+        videoList.add(videoAt(ordinal));
+      }
+      return videoList;
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns all videos in title order.
+   */
+  List<Video> getVideosSortedByTitle() {
+    return getVideosSortedByTitle(null, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns at most limit of the videos in title order that come after the given video, or from
+   * the first if it is null. Only the start is looked up, so reading a page costs the page and
+   * not the videos before it. The page is read holding the read lock, since the order compares
+   * titles a reload may be changing.
+   */
+  List<Video> getVideosSortedByTitle(Video after, int limit) {
+    this.lock.readLock().lock();
+    try {
+      TitleOrder order = titleOrder();
+      Iterable<Integer> ordinals = after == null ? order : order.after(after.getOrdinal());
+      List<Video> videoList = new ArrayList<>(Math.min(limit, this.catalog.liveCount()));
+      for (Iterator<Integer> page = ordinals.iterator(); videoList.size() < limit && page.hasNext(); ) {
+        videoList.add(videoAt(page.next()));
+      }
+      return videoList;
+    } finally {
+      this.lock.readLock().unlock();
+    }
   }
 
   /**
    * Get a video by id. Returns null if the video is not found.
    */
   Video getVideo(String videoId) {
-    return this.videos.get(videoId);
+    this.lock.readLock().lock();
+    try {
+      int ordinal = this.catalog.ordinalOf(videoId);
+      return ordinal < 0 ? null : videoAt(ordinal);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get a video by ordinal. Returns null if the video has been removed.
+   */
+  Video getVideo(int ordinal) {
+    this.lock.readLock().lock();
+    try {
+      return this.catalog.isRemoved(ordinal) ? null : videoAt(ordinal);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the id of the video with the given ordinal, even if the video has been removed.
+   */
+  String videoIdAt(int ordinal) {
+    this.lock.readLock().lock();
+    try {
+      return this.catalog.videoId(ordinal);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the ordinal of the video with the given id, even if it has been removed. An id that
+   * isn't in the catalog is given the ordinal it will have if the video is added by a reload.
+   */
+  int reserveOrdinal(String videoId) {
+    this.lock.readLock().lock();
+    try {
+      int ordinal = this.catalog.ordinalOf(videoId);
+      if (ordinal >= 0) {
+        return ordinal;
+      }
+    } finally {
+      this.lock.readLock().unlock();
+    }
+
+    this.lock.writeLock().lock();
+    try {
+      return this.catalog.reserve(videoId);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns a video that isn't flagged, picked at random, or null if every video is flagged.
+   */
+  Video getRandomVideo() {
+    return getRandomVideo(RandomPlayback.UNIFORM);
+  }
+
+  /**
+   * Returns a video that isn't flagged, picked at random the way the playback says, or null if
+   * no video can be picked. Unweighted picks take one draw; weighted picks draw until a video is
+   * accepted with a chance of its weight over the largest weight, so they take maxWeight over the
+   * average weight draws on average.
+   */
+  Video getRandomVideo(RandomPlayback playback) {
+    this.lock.readLock().lock();
+    try {
+      PlayableIndex playable = playable();
+      if (playable.size() == 0) {
+        return null;
+      }
+      Random random = playback.random();
+      if (!playback.isWeighted()) {
+        return videoAt(playable.get(random.nextInt(playable.size())));
+      }
+
+      double[] weights = playback.weightsByTagId(this.catalog);
+      for (int draw = 0; draw < MAX_WEIGHTED_DRAWS; draw++) {
+        int ordinal = playable.get(random.nextInt(playable.size()));
+        if (random.nextDouble() * playback.maxWeight() < this.catalog.weight(ordinal, weights, 1)) {
+          return videoAt(ordinal);
+        }
+      }
+
+      // the weights are too uneven for drawing to settle, so pick by a pass over all of them
+      double total = 0;
+      for (int position = 0; position < playable.size(); position++) {
+        total += this.catalog.weight(playable.get(position), weights, 1);
+      }
+      double target = random.nextDouble() * total;
+      int picked = -1;
+      for (int position = 0; position < playable.size() && target >= 0; position++) {
+        double weight = this.catalog.weight(playable.get(position), weights, 1);
+        if (weight > 0) {
+          // the last video with any weight is kept in case rounding leaves target just above 0
+          picked = playable.get(position);
+          target -= weight;
+        }
+      }
+      return picked < 0 ? null : videoAt(picked);
+    } finally {
+      this.lock.readLock().unlock();
+    }
   }
 
   /**
-   * Search and list videos by title. Returns null if the video is not found.
+   * Search and list videos by title. Returns an empty list if no video matches.
    */
   List<Video> searchVideosByTitle(String title) {
-    List<Video> videoList =
-            this.getVideos().stream().filter(x -> !x.getFlagged()).sorted(Comparator.comparing(Video::getTitle))
-                    .collect(Collectors.toList());
+    return searchVideosByTitle(title, null, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Search videos by title and return at most limit of them, starting after the given video in
+   * title order, or from the first if it is null. Returns an empty list if no video matches.
+   */
+  List<Video> searchVideosByTitle(String title, Video after, int limit) {
+    String searchTerm = title.toLowerCase();
+    this.lock.readLock().lock();
+    try {
+      int[] candidates = this.titleIndex().candidates(title);
 
-    List<Video> filteredVideosList = videoList.stream()
-            .filter(x-> x.getTitle().toLowerCase().contains(title.toLowerCase())).collect(Collectors.toList());
+      FlagTable flags = this.catalog.flags();
+      BitSet matches = new BitSet(this.catalog.size());
+      if (candidates == null) {
+        for (int ordinal = flags.nextUnflagged(0); ordinal < this.catalog.size();
+             ordinal = flags.nextUnflagged(ordinal + 1)) {
+          if (!this.catalog.isRemoved(ordinal) && this.catalog.title(ordinal).toLowerCase().contains(searchTerm)) {
+            matches.set(ordinal);
+          }
+        }
+      } else {
+        for (int ordinal : candidates) {
+          if (!flags.isFlagged(ordinal) && this.catalog.title(ordinal).toLowerCase().contains(searchTerm)) {
+            matches.set(ordinal);
+          }
+        }
+      }
 
-    return filteredVideosList;
+      return inTitleOrder(matches, after, limit);
+    } finally {
+      this.lock.readLock().unlock();
+    }
   }
 
   /**
-   * Search and list videos by tag. Returns null if the video is not found.
+   * Search and list videos by tag. Returns an empty list if no video matches.
    */
   List<Video> searchVideosByTag(String title) {
-    List<Video> videoList =
-            this.getVideos().stream().filter(x -> !x.getFlagged()).sorted(Comparator.comparing(Video::getTitle))
-                    .collect(Collectors.toList());
+    return searchVideosByTags(List.of(title));
+  }
+
+  /**
+   * Search and list videos matching a tag query such as "#cat AND #animal NOT #dog".
+   * Returns an empty list if no video matches.
+   */
+  List<Video> searchVideosByTags(List<String> query) {
+    return searchVideosByTags(query, null, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Search videos matching a tag query and return at most limit of them, starting after the
+   * given video in title order, or from the first if it is null. Returns an empty list if no
+   * video matches.
+   */
+  List<Video> searchVideosByTags(List<String> query, Video after, int limit) {
+    this.lock.readLock().lock();
+    try {
+      BitSet matches = this.tagIndex().evaluate(query);
+      matches.andNot(this.catalog.removed());
+      this.catalog.flags().excludeFrom(matches);
+
+      return inTitleOrder(matches, after, limit);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns up to limit of the videos of the given ordinals in title order, starting after the
+   * given video if there is one. Small result sets are sorted on their own; once sorting them
+   * would cost more than a pass over the ordered view, the view is walked from the start of
+   * the page and filtered instead, stopping once the page is full.
+   */
+  private List<Video> inTitleOrder(BitSet matches, Video after, int limit) {
+    int count = matches.cardinality();
+    List<Video> videoList = new ArrayList<>(Math.min(count, limit));
+    double sortCost = count * (Math.log(Math.max(count, 2)) / Math.log(2));
+    if (sortCost < this.catalog.liveCount()) {
+      List<Integer> ordinals = new ArrayList<>(count);
+      for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+        if (after == null || this.catalog.compareByTitle(ordinal, after.getOrdinal()) > 0) {
+          ordinals.add(ordinal);
+        }
+      }
+      ordinals.sort(this.catalog::compareByTitle);
+      for (int ordinal : ordinals.subList(0, Math.min(ordinals.size(), limit))) {
+        videoList.add(videoAt(ordinal));
+      }
+    } else {
+      Iterable<Integer> order = after == null ? this.titleOrder() : this.titleOrder().after(after.getOrdinal());
+      for (int ordinal : order) {
+        if (videoList.size() == limit) {
+          break;
+        }
+        if (matches.get(ordinal)) {
+          videoList.add(videoAt(ordinal));
+        }
+      }
+    }
+    return videoList;
+  }
+
+  private Video videoAt(int ordinal) {
+    return new Video(this.catalog, ordinal);
+  }
+
+  /**
+   * Starts reloading the catalog whenever its file changes. Close the returned watcher to stop.
+   */
+  CatalogWatcher watch() throws IOException {
+    return CatalogWatcher.start(this.source, this::reload);
+  }
+
+  /**
+   * Re-reads the catalog file and applies what changed to the live library and its indexes in
+   * one step: readers see either the old or the new catalog, never a mix. Surviving videos keep
+   * their ordinal and flag; removed videos lose their flag. Returns the applied delta.
+   */
+  CatalogDelta reload() throws IOException {
+    synchronized (this.reloadLock) {
+      return reloadFrom(this.source);
+    }
+  }
+
+  private CatalogDelta reloadFrom(Path source) throws IOException {
+    VideoCatalog fresh = new VideoCatalog();
+    parse(source, fresh);
+
+    CatalogDelta delta;
+    this.lock.readLock().lock();
+    try {
+      delta = CatalogDelta.between(this.catalog, fresh);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+    if (delta.isEmpty()) {
+      return delta;
+    }
+
+    this.lock.writeLock().lock();
+    try {
+      BitSet removed = delta.removedOrdinals();
+      for (int ordinal = removed.nextSetBit(0); ordinal >= 0; ordinal = removed.nextSetBit(ordinal + 1)) {
+        unindex(ordinal);
+        this.catalog.remove(ordinal);
+        this.catalog.flags().allow(ordinal);
+        if (this.playable != null) {
+          this.playable.remove(ordinal);
+        }
+      }
+
+      BitSet changed = delta.changedRows();
+      for (int row = changed.nextSetBit(0); row >= 0; row = changed.nextSetBit(row + 1)) {
+        unindex(this.catalog.ordinalOf(fresh.videoId(row)));
+        index(this.catalog.add(fresh.title(row), fresh.videoId(row), fresh.tags(row)));
+      }
+
+      BitSet added = delta.addedRows();
+      for (int row = added.nextSetBit(0); row >= 0; row = added.nextSetBit(row + 1)) {
+        int ordinal = this.catalog.add(fresh.title(row), fresh.videoId(row), fresh.tags(row));
+        index(ordinal);
+        if (this.playable != null) {
+          this.playable.add(ordinal);
+        }
+      }
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+    return delta;
+  }
 
-    List<Video> filteredVideosList = videoList.stream()
-            .filter(x-> {
-              var anyMatch = x.getTags().stream()
-                      .anyMatch(o -> o.equalsIgnoreCase(title));
-              return anyMatch;
-                    }
-            ).collect(Collectors.toList());
+  /** Removes a video from the built indexes; must run before its title or tags change. */
+  private void unindex(int ordinal) {
+    if (this.titleOrder != null) {
+      this.titleOrder.remove(ordinal);
+    }
+    if (this.titleIndex != null) {
+      this.titleIndex.remove(ordinal, this.catalog.title(ordinal));
+    }
+    if (this.tagIndex != null) {
+      this.tagIndex.remove(ordinal, this.catalog.tags(ordinal));
+    }
+  }
 
-    return filteredVideosList;
+  private void index(int ordinal) {
+    if (this.titleOrder != null) {
+      this.titleOrder.add(ordinal);
+    }
+    if (this.titleIndex != null) {
+      this.titleIndex.add(ordinal, this.catalog.title(ordinal));
+    }
+    if (this.tagIndex != null) {
+      this.tagIndex.add(ordinal, this.catalog.tags(ordinal));
+    }
   }
 
   /**
-   * Flag a video. Returns null if the video is not found.
+   * Flag a video. Returns false if the video is not found or already flagged.
    */
   boolean flagVideo(String videoId, String flagReason) {
+    return flagVideo(videoId, flagReason, this.out);
+  }
+
+  /**
+   * Flag a video, writing the outcome to the given sink rather than the library's.
+   */
+  boolean flagVideo(String videoId, String flagReason, OutputSink out) {
+    boolean flagged;
+    this.lock.writeLock().lock();
+    try {
+      flagged = flag(videoId, flagReason, out);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+    if (flagged) {
+      for (Consumer<String> listener : this.flagListeners) {
+        listener.accept(videoId);
+      }
+    }
+    return flagged;
+  }
+
+  /**
+   * Tell a listener the id of every video flagged from now on. It is called by the thread that
+   * flagged the video, once the flag is set and no lock is held.
+   */
+  void addFlagListener(Consumer<String> listener) {
+    this.flagListeners.add(listener);
+  }
+
+  void removeFlagListener(Consumer<String> listener) {
+    this.flagListeners.remove(listener);
+  }
+
+  private boolean flag(String videoId, String flagReason, OutputSink out) {
     // get video
-    var video = this.getVideo(videoId);
+    int ordinal = this.catalog.ordinalOf(videoId);
+    FlagTable flags = this.catalog.flags();
 
     // check if video exists
-    if (video == null) {
-      System.out.println("Cannot flag video: Video does not exist");
+    if (ordinal < 0) {
+      out.println("Cannot flag video: Video does not exist");
       return false;
     } else {
       // check if video is already flagged
-      if (video.getFlagged())
+      if (flags.isFlagged(ordinal))
       {
-        System.out.println("Cannot flag video: Video is already flagged");
+        out.println("Cannot flag video: Video is already flagged");
         return false;
       }
 
       // flag video
-      video = new Video(video.getTitle(), video.getVideoId(), video.getTags(), true, flagReason);
+      flags.flag(ordinal, flagReason);
+      if (this.playable != null) {
+        this.playable.remove(ordinal);
+      }
 
       if(flagReason != null && !flagReason.isEmpty() && !flagReason.isBlank())
-        System.out.println(String.format("Successfully flagged video: %s (reason: %s)",
-                video.getTitle(), video.getFlaggedReason()));
+        out.println(String.format("Successfully flagged video: %s (reason: %s)",
+                this.catalog.title(ordinal), flagReason));
       else
-        System.out.println(String.format("Successfully flagged video: %s (reason: %s)",
-                  video.getTitle(), "Not supplied)"));
-
-      // update video list
-      this.videos.put(videoId, video);
+        out.println(String.format("Successfully flagged video: %s (reason: %s)",
+                  this.catalog.title(ordinal), "Not supplied)"));
     }
 
     return true;
   }
 
   /**
-   * Flag a video. Returns null if the video is not found.
+   * Remove the flag from a video. Returns false if the video is not found or not flagged.
    */
   boolean allowVideo(String videoId) {
+    return allowVideo(videoId, this.out);
+  }
+
+  /**
+   * Remove the flag from a video, writing the outcome to the given sink rather than the library's.
+   */
+  boolean allowVideo(String videoId, OutputSink out) {
+    this.lock.writeLock().lock();
+    try {
+      return allow(videoId, out);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  private boolean allow(String videoId, OutputSink out) {
     // get video
-    var video = this.getVideo(videoId);
+    int ordinal = this.catalog.ordinalOf(videoId);
+    FlagTable flags = this.catalog.flags();
 
     // check if video exists
-    if (video == null) {
-      System.out.println("Cannot remove flag from video: Video does not exist");
+    if (ordinal < 0) {
+      out.println("Cannot remove flag from video: Video does not exist");
       return false;
     } else {
       // check if video is not flagged
-      if (!video.getFlagged())
+      if (!flags.isFlagged(ordinal))
       {
-        System.out.println("Cannot remove flag from video: Video is not flagged");
+        out.println("Cannot remove flag from video: Video is not flagged");
         return false;
       }
 
       // allow video
-      video = new Video(video.getTitle(), video.getVideoId(), video.getTags(), false, null);
-
-      // update video list
-      this.videos.put(videoId, video);
-      System.out.println(String.format("Successfully removed flag from video: %s", video.getTitle()));
+      flags.allow(ordinal);
+      if (this.playable != null) {
+        this.playable.add(ordinal);
+      }
+      out.println(String.format("Successfully removed flag from video: %s", this.catalog.title(ordinal)));
     }
 
     return true;
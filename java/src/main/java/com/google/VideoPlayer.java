@@ -1,51 +1,121 @@
 package com.google;
 
 import java.lang.module.FindException;
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class VideoPlayer {
 
+  // reads the answer to the search prompt from the console; the scanner is made when it's needed, as System.in may
+  // have been replaced since the player was made
+  private static final Supplier<String> CONSOLE_ANSWERS = () -> new Scanner(System.in).nextLine();
+
   private final VideoLibrary videoLibrary;
   private final PlaylistLibrary playlistLibrary;
+  // where the outcome of commands is written, see flush()
+  private final OutputSink out;
+  // how PLAY_RANDOM picks a video
+  private final RandomPlayback randomPlayback;
+  // where the answer to the search prompt comes from; null is taken as no
+  private final Supplier<String> answers;
+  // the last playback events of this player, see showRecentlyPlayed() and showHistory()
+  private final PlaybackHistory history;
   private String currentPlayingVideoId;
   private boolean currentVideoPaused;
 //  private List<VideoPlaylist> videoPlaylists;
 
   public VideoPlayer() {
-    this.videoLibrary = new VideoLibrary();
-    this.playlistLibrary = new PlaylistLibrary();
+    this(new VideoLibrary());
+  }
+
+  VideoPlayer(VideoLibrary videoLibrary) {
+    this(videoLibrary, new PlaylistLibrary(videoLibrary));
+  }
+
+  VideoPlayer(VideoLibrary videoLibrary, PlaylistLibrary playlistLibrary) {
+    this(videoLibrary, playlistLibrary, playlistLibrary.getOutput());
+  }
+
+  /*
+    the player and the playlist library should share the sink, so the output of a command stays in order
+  */
+  VideoPlayer(VideoLibrary videoLibrary, PlaylistLibrary playlistLibrary, OutputSink out) {
+    this(videoLibrary, playlistLibrary, out, RandomPlayback.UNIFORM);
+  }
+
+  VideoPlayer(VideoLibrary videoLibrary, PlaylistLibrary playlistLibrary, OutputSink out,
+              RandomPlayback randomPlayback) {
+    this(videoLibrary, playlistLibrary, out, randomPlayback, CONSOLE_ANSWERS);
+  }
+
+  VideoPlayer(VideoLibrary videoLibrary, PlaylistLibrary playlistLibrary, OutputSink out,
+              RandomPlayback randomPlayback, Supplier<String> answers) {
+    this(videoLibrary, playlistLibrary, out, randomPlayback, answers,
+        new PlaybackHistory(PlaylistLibrary.DEFAULT_OWNER, null));
+  }
+
+  VideoPlayer(VideoLibrary videoLibrary, PlaylistLibrary playlistLibrary, OutputSink out,
+              RandomPlayback randomPlayback, Supplier<String> answers, PlaybackHistory history) {
+    this.videoLibrary = videoLibrary;
+    this.playlistLibrary = playlistLibrary;
+    this.out = out;
+    this.randomPlayback = randomPlayback;
+    this.answers = answers;
+    this.history = history;
 //    this.videoPlaylists = new ArrayList<VideoPlaylist>();
   }
 
+  OutputSink getOutput() {
+    return this.out;
+  }
+
+  /*
+    write out whatever the last command left in the sink; called after every command
+  */
+  public void flush() {
+    this.out.flush();
+  }
+
   public void numberOfVideos() {
-    System.out.printf("%s videos in the library%n", videoLibrary.getVideos().size());
+    this.out.println(String.format("%s videos in the library", videoLibrary.getVideos().size()));
   }
 
   /*
     list videos and sort them lexicographical order by title
   */
   public void showAllVideos() {
-    System.out.println("Here's a list of all available videos:");
-    List<Video> videoList = videoLibrary.getVideos();
-    sortAndListVideos(videoList, true);
+    showAllVideos(Page.ALL);
+  }
+
+  public void showAllVideos(Page page) {
+    Video after = afterVideo(page);
+    if (page.after() != null && after == null) {
+      this.out.println(String.format("Cannot show videos after %s: Video does not exist", page.after()));
+      return;
+    }
+    this.out.println("Here's a list of all available videos:");
+    listVideos(videoLibrary.getVideosSortedByTitle(after, onePastPage(page)), page);
   }
 
-  private void sortAndListVideos(List<Video> videoList, boolean sort) {
-    videoList = sort ? videoList.stream().sorted(Comparator.comparing(Video::getTitle)).collect(Collectors.toList()) : videoList;
-    for (Video video : videoList) {
+  /*
+    list at most a page of videos, followed by the cursor of the next page if there are more
+  */
+  private void listVideos(Iterable<Video> videoList, Page page) {
+    Iterator<Video> videos = videoList.iterator();
+    for (int shown = 0; videos.hasNext(); shown++) {
+      Video video = videos.next();
       // get flagged reason, if exist
       String flagged = "";
       if (video.getFlagged())
-        flagged = video.getFlaggedReason() != null ? String.format("- FLAGGED (reason: %s)",
-                video.getFlaggedReason()) : "- " +
-                "FLAGGED (reason: Not supplied)";
+        flagged = "- FLAGGED (reason: " + Objects.requireNonNullElse(video.getFlaggedReason(), "Not supplied") + ")";
       // printout videos details
-      System.out.println(String.format("%s (%s) %s %s",
-              video.getTitle(),
-              video.getVideoId(),
-              video.getTags().toString().replaceAll(",", ""),
-              flagged));
+      this.out.result(video, video.getDisplay() + " " + flagged);
+      if (shown + 1 == page.size() && videos.hasNext()) {
+        this.out.println(String.format("Next cursor: %s", video.getVideoId()));
+        break;
+      }
     }
   }
 
@@ -56,7 +126,7 @@ public class VideoPlayer {
     if(video != null && video.getFlagged())
     {
       String reason = video.getFlaggedReason() != null ? video.getFlaggedReason() : "Not supplied";
-      System.out.println(String.format("Cannot play video: Video is currently flagged (reason:" +
+      this.out.println(String.format("Cannot play video: Video is currently flagged (reason:" +
               " %s)", reason));
       return;
     }
@@ -67,68 +137,84 @@ public class VideoPlayer {
 
       this.currentPlayingVideoId = videoId;
       currentVideoPaused = false;
-      System.out.println(String.format("Playing video: %s", video.getTitle()));
+      this.out.println(String.format("Playing video: %s", video.getTitle()));
+      this.history.record(PlaybackEvent.Kind.PLAYED, video);
     } catch (Exception e) {
-      System.out.println("Cannot play video: Video does not exist");
+      this.out.println("Cannot play video: Video does not exist");
     }
   }
 
   public void stopVideo() {
     try {
       if (this.currentPlayingVideoId != null && !this.currentPlayingVideoId.equals(" ")) {
-        System.out.println(String.format("Stopping video: %s", this.videoLibrary.getVideo(this.currentPlayingVideoId).getTitle()));
+        Video video = this.videoLibrary.getVideo(this.currentPlayingVideoId);
+        this.out.println(String.format("Stopping video: %s", video.getTitle()));
+        this.history.record(PlaybackEvent.Kind.STOPPED, video);
         this.currentPlayingVideoId = null;
         currentVideoPaused = false;
       } else {
-        System.out.println("Cannot stop video: No video is currently playing");
+        this.out.println("Cannot stop video: No video is currently playing");
       }
     } catch (Exception e) {
-      System.out.println("Cannot stop video: Video does not exist");
+      this.out.println("Cannot stop video: Video does not exist");
     }
   }
 
+  /**
+   * Stop the current video if it is the given one, whether it is playing or paused. Does nothing
+   * otherwise, e.g. when another session flags a video this one isn't watching.
+   */
+  void stopVideoIfCurrent(String videoId) {
+    if (videoId.equals(this.currentPlayingVideoId))
+      this.stopVideo();
+  }
+
   public void playRandomVideo() {
-    try {
-      if (this.currentPlayingVideoId != null)
-        this.stopVideo();
+    if (this.currentPlayingVideoId != null)
+      this.stopVideo();
 
-      var videoList = this.videoLibrary.getVideos().stream().filter(x -> !x.getFlagged()).collect(Collectors.toList());
-      Random rand = new Random();
-      Video randomVideo = videoList.get(rand.nextInt(videoList.size()));
+    Video randomVideo = this.videoLibrary.getRandomVideo(this.randomPlayback);
+    if (randomVideo == null) {
+      this.out.println("No videos available");
+      return;
+    }
 
-      this.currentPlayingVideoId = randomVideo.getVideoId();
-      currentVideoPaused = false;
+    this.currentPlayingVideoId = randomVideo.getVideoId();
+    currentVideoPaused = false;
 
-      System.out.println(String.format("Playing video: %s", this.videoLibrary.getVideo(randomVideo.getVideoId()).getTitle()));
-    } catch (Exception e) {
-      System.out.println("No videos available");
-    }
+    this.out.println(String.format("Playing video: %s", randomVideo.getTitle()));
+    this.history.record(PlaybackEvent.Kind.PLAYED, randomVideo);
   }
 
   public void pauseVideo() {
       if (this.currentPlayingVideoId != null && !this.currentPlayingVideoId.equals(" ")) {
         if (!currentVideoPaused) {
-          System.out.println(String.format("Pausing video: %s", this.videoLibrary.getVideo(this.currentPlayingVideoId).getTitle()));
+          Video video = this.videoLibrary.getVideo(this.currentPlayingVideoId);
+          this.out.println(String.format("Pausing video: %s", video.getTitle()));
           currentVideoPaused = true;
+          this.history.record(PlaybackEvent.Kind.PAUSED, video);
         }
         else
-          System.out.println(String.format("Video already paused: %s", this.videoLibrary.getVideo(this.currentPlayingVideoId).getTitle()));
+          this.out.println(String.format("Video already paused: %s", this.videoLibrary.getVideo(this.currentPlayingVideoId).getTitle()));
 
       } else {
-        System.out.println("Cannot pause video: No video is currently playing");
+        this.out.println("Cannot pause video: No video is currently playing");
       }
   }
 
   public void continueVideo() {
     if (this.currentPlayingVideoId != null && !this.currentPlayingVideoId.equals(" ")) {
       if (!currentVideoPaused) {
-        System.out.println("Cannot continue video: Video is not paused");
+        this.out.println("Cannot continue video: Video is not paused");
+      }
+      else {
+        Video video = this.videoLibrary.getVideo(this.currentPlayingVideoId);
+        this.out.println(String.format("Continuing video: %s", video.getTitle()));
+        this.history.record(PlaybackEvent.Kind.CONTINUED, video);
       }
-      else
-        System.out.println(String.format("Continuing video: %s", this.videoLibrary.getVideo(this.currentPlayingVideoId).getTitle()));
 
     } else {
-      System.out.println("Cannot continue video: No video is currently playing");
+      this.out.println("Cannot continue video: No video is currently playing");
     }
   }
 
@@ -136,17 +222,52 @@ public class VideoPlayer {
     if (this.currentPlayingVideoId != null && !this.currentPlayingVideoId.equals(" ")) {
       Video currentVideo = this.videoLibrary.getVideo(this.currentPlayingVideoId);
       if (!currentVideoPaused)
-        System.out.println(String.format("Currently playing: %s (%s) %s",
-                currentVideo.getTitle(),
-                currentVideo.getVideoId(),
-                currentVideo.getTags().toString().replaceAll(",", "")));
+        this.out.println("Currently playing: " + currentVideo.getDisplay());
       else
-        System.out.println(String.format("Currently playing: %s (%s) %s - PAUSED",
-                currentVideo.getTitle(),
-                currentVideo.getVideoId(),
-                currentVideo.getTags().toString().replaceAll(",", "")));
+        this.out.println("Currently playing: " + currentVideo.getDisplay() + " - PAUSED");
     } else {
-      System.out.println("No video is currently playing");
+      this.out.println("No video is currently playing");
+    }
+  }
+
+  /*
+    list the videos played lately, most recent first, each once
+  */
+  public void showRecentlyPlayed() {
+    List<Video> videos = new ArrayList<>();
+    Set<Integer> seen = new HashSet<>();
+    for (int back = 0; back < this.history.size(); back++) {
+      if (this.history.kind(back) != PlaybackEvent.Kind.PLAYED || !seen.add(this.history.ordinal(back)))
+        continue;
+      // videos removed from the catalog by a reload are not shown
+      Video video = this.videoLibrary.getVideo(this.history.ordinal(back));
+      if (video != null)
+        videos.add(video);
+    }
+
+    if (videos.isEmpty())
+      this.out.println("No videos played yet");
+    else {
+      this.out.println("Recently played videos:");
+      this.listVideos(videos, Page.ALL);
+    }
+  }
+
+  /*
+    list the last playback events, most recent first
+  */
+  public void showHistory() {
+    if (this.history.size() == 0) {
+      this.out.println("No playback history yet");
+      return;
+    }
+
+    this.out.println("Playback history:");
+    for (int back = 0; back < this.history.size(); back++) {
+      Video video = this.videoLibrary.getVideo(this.history.ordinal(back));
+      String shown = video != null ? video.getTitle() : this.videoLibrary.videoIdAt(this.history.ordinal(back));
+      this.out.println(String.format("%s %s: %s", Instant.ofEpochMilli(this.history.time(back)),
+              this.history.kind(back).verb(), shown));
     }
   }
 
@@ -164,36 +285,94 @@ public class VideoPlayer {
 
   }
 
+  public void addVideosToPlaylist(String playlistName, List<String> videoIds) {
+    this.playlistLibrary.addVideosToPlayList(playlistName, videoIds, this.videoLibrary::getVideo);
+  }
+
+  public void removeVideosFromPlaylist(String playlistName, List<String> videoIds) {
+    this.playlistLibrary.removeVideosFromPlayList(playlistName, videoIds, this.videoLibrary::getVideo);
+  }
+
   public void showAllPlaylists() {
     var videoPlayLists = this.playlistLibrary.getVideoPlayLists();
     videoPlayLists = videoPlayLists.stream().sorted(Comparator.comparing(VideoPlaylist::getTitle)).collect(Collectors.toList());
 
     if(videoPlayLists.size() == 0)
-      System.out.println("No playlists exist yet");
+      this.out.println("No playlists exist yet");
     else {
-      System.out.println("Showing all playlists:");
+      this.out.println("Showing all playlists:");
       for (VideoPlaylist videoPlayList: videoPlayLists) {
-        System.out.println(String.format("%s", videoPlayList.getTitle()));
+        this.out.result(videoPlayList, videoPlayList.getTitle());
       }
     }
   }
 
   public void showPlaylist(String playlistName) {
+    showPlaylist(playlistName, Page.ALL);
+  }
+
+  public void showPlaylist(String playlistName, Page page) {
     var playList = this.playlistLibrary.getVideoPlayList(playlistName);
     if(playList == null)
-      System.out.println(String.format("Cannot show playlist %s: Playlist does not exist", playlistName));
+      this.out.println(String.format("Cannot show playlist %s: Playlist does not exist", playlistName));
     else {
-      System.out.println(String.format("Showing playlist: %s", playlistName));
-      var playlistVideos = playList.getVideosList();
-      if (playlistVideos ==  null || playlistVideos.size() == 0)
-        System.out.println("No videos here yet");
-      else {
-        List<Video> videosList = new ArrayList<>();
-        for (String videoId: playlistVideos) {
-          Video video = this.videoLibrary.getVideo(videoId);
-          videosList.add(video);
+      // the playlist may be changed while it is shown; this version of it won't be
+      var playlistVideos = playList.getVideos();
+      PrimitiveIterator.OfInt ordinals = playlistVideos.iterator();
+      if (page.after() != null) {
+        Video after = this.videoLibrary.getVideo(page.after());
+        ordinals = after == null ? null : playList.getVideosAfter(playlistVideos, after.getOrdinal());
+        if (ordinals == null) {
+          this.out.println(String.format("Cannot show playlist %s after %s: Video is not in playlist",
+                  playlistName, page.after()));
+          return;
         }
-        this.sortAndListVideos(videosList, false);
+      }
+
+      this.out.println(String.format("Showing playlist: %s", playlistName));
+      if (playlistVideos.isEmpty())
+        this.out.println("No videos here yet");
+      else {
+        PrimitiveIterator.OfInt pageOrdinals = ordinals;
+        this.listVideos(() -> new Iterator<>() {
+          private Video next;
+
+          @Override
+          public boolean hasNext() {
+            // videos removed from the catalog by a reload stay referenced but are not shown
+            while (next == null && pageOrdinals.hasNext())
+              next = videoLibrary.getVideo(pageOrdinals.nextInt());
+            return next != null;
+          }
+
+          @Override
+          public Video next() {
+            if (!hasNext())
+              throw new NoSuchElementException();
+            Video video = next;
+            next = null;
+            return video;
+          }
+        }, page);
+      }
+    }
+  }
+
+  public void showPlaylistsContaining(String videoId) {
+    Video video = this.videoLibrary.getVideo(videoId);
+    if (video == null) {
+      this.out.println(String.format("Cannot show playlists containing %s: Video does not exist", videoId));
+      return;
+    }
+
+    var videoPlayLists = this.playlistLibrary.getVideoPlayListsContaining(videoId);
+    if (videoPlayLists.isEmpty())
+      this.out.println(String.format("%s is not in any playlist", video.getTitle()));
+    else {
+      this.out.println(String.format("Playlists containing %s:", video.getTitle()));
+      videoPlayLists.sort(Comparator.comparing(VideoPlaylist::getTitle));
+      for (VideoPlaylist videoPlayList : videoPlayLists) {
+        this.out.result(videoPlayList, videoPlayList.getTitle());
       }
     }
   }
@@ -213,41 +392,112 @@ public class VideoPlayer {
     this.playlistLibrary.deletePlayList(playlistName);
   }
 
+  public void showPlaylistStats() {
+    var usage = this.playlistLibrary.getUsage();
+    var total = this.playlistLibrary.getTotalUsage();
+    var limits = this.playlistLibrary.getLimits();
+    this.out.println(String.format("Your playlists: %d playlists, %d videos, about %s",
+            usage.playlists(), usage.entries(), bytes(usage.bytes())));
+    this.out.println(String.format("All playlists: %d owners, %d playlists, %d videos, about %s",
+            this.playlistLibrary.getOwnersWithPlaylists(), total.playlists(), total.entries(), bytes(total.bytes())));
+    if (!limits.isLimited())
+      this.out.println("No playlist limits set");
+    else {
+      this.out.println(String.format("Playlist limit: soft %s, hard %s",
+              limit(limits.softPlaylists()), limit(limits.maxPlaylists())));
+      this.out.println(String.format("Video limit: soft %s, hard %s",
+              limit(limits.softEntries()), limit(limits.maxEntries())));
+    }
+  }
+
+  private static String bytes(long bytes) {
+    if (bytes < 1024)
+      return String.format("%d B", bytes);
+    if (bytes < 1024 * 1024)
+      return String.format("%.1f KB", bytes / 1024.0);
+    return String.format("%.1f MB", bytes / (1024.0 * 1024));
+  }
+
+  private static String limit(long limit) {
+    return limit == Integer.MAX_VALUE || limit == Long.MAX_VALUE ? "none" : String.valueOf(limit);
+  }
+
   public void searchVideos(String searchTerm) {
-    var filteredVideoList = this.videoLibrary.searchVideosByTitle(searchTerm);
+    searchVideos(searchTerm, Page.ALL);
+  }
+
+  public void searchVideos(String searchTerm, Page page) {
+    Video after = afterVideo(page);
+    if (page.after() != null && after == null) {
+      this.out.println(String.format("Cannot show results after %s: Video does not exist", page.after()));
+      return;
+    }
+    var filteredVideoList = this.videoLibrary.searchVideosByTitle(searchTerm, after, onePastPage(page));
     if(filteredVideoList.size() == 0)
-      System.out.println(String.format("No search results for %s", searchTerm));
+      this.out.println(String.format("No search results for %s", searchTerm));
     else {
-      searchAndPlayVideoFromUserSelection(searchTerm, filteredVideoList, "Nope!");
+      searchAndPlayVideoFromUserSelection(searchTerm, filteredVideoList, page, "Nope!");
     }
   }
 
   public void searchVideosWithTag(String videoTag) {
-    var filteredVideoList = this.videoLibrary.searchVideosByTag(videoTag);
+    searchVideosWithTag(List.of(videoTag));
+  }
+
+  /*
+    search videos with a tag query, e.g. "#cat AND #animal NOT #dog" or "#cat OR #dog"
+  */
+  public void searchVideosWithTag(List<String> tagQuery) {
+    searchVideosWithTag(tagQuery, Page.ALL);
+  }
+
+  public void searchVideosWithTag(List<String> tagQuery, Page page) {
+    Video after = afterVideo(page);
+    if (page.after() != null && after == null) {
+      this.out.println(String.format("Cannot show results after %s: Video does not exist", page.after()));
+      return;
+    }
+    var query = String.join(" ", tagQuery);
+    var filteredVideoList = this.videoLibrary.searchVideosByTags(tagQuery, after, onePastPage(page));
     if(filteredVideoList.size() == 0)
-      System.out.println(String.format("No search results for %s", videoTag));
+      this.out.println(String.format("No search results for %s", query));
     else {
-      searchAndPlayVideoFromUserSelection(videoTag, filteredVideoList, "No");
+      searchAndPlayVideoFromUserSelection(query, filteredVideoList, page, "No");
     }
   }
 
-  private void searchAndPlayVideoFromUserSelection(String videoTag, List<Video> filteredVideoList, String no) {
-    System.out.println(String.format("Here are the results for %s:", videoTag));
+  private Video afterVideo(Page page) {
+    return page.after() != null ? this.videoLibrary.getVideo(page.after()) : null;
+  }
+
+  /*
+    searches fetch one result more than the page holds, to tell whether there is a next page
+  */
+  private static int onePastPage(Page page) {
+    return page.size() == Integer.MAX_VALUE ? page.size() : page.size() + 1;
+  }
+
+  private void searchAndPlayVideoFromUserSelection(String videoTag, List<Video> filteredVideoList, Page page,
+                                                   String no) {
+    boolean more = filteredVideoList.size() > page.size();
+    if (more)
+      filteredVideoList = filteredVideoList.subList(0, page.size());
+    this.out.println(String.format("Here are the results for %s:", videoTag));
     for (int i = 0; i < filteredVideoList.size(); i++) {
       Video video = filteredVideoList.get(i);
-      System.out.println(String.format("%s) %s (%s) %s",
-              i + 1,
-              video.getTitle(),
-              video.getVideoId(),
-              video.getTags().toString().replaceAll(",", "")));
+      this.out.result(video, (i + 1) + ") " + video.getDisplay());
     }
+    if (more)
+      this.out.println(String.format("Next cursor: %s",
+              filteredVideoList.get(filteredVideoList.size() - 1).getVideoId()));
 
     try {
-      Scanner scanner = new Scanner(System.in);
-      System.out.println("Would you like to play any of the above? If yes, specify the number of the video.\n" +
+      this.out.println("Would you like to play any of the above? If yes, specify the number of the video.\n" +
               "If your answer is not a valid number, we will assume it's a no.");
+      // the user has to see the results before answering
+      this.out.flush();
 
-      int selection = Integer.parseInt(scanner.nextLine());
+      int selection = Integer.parseInt(this.answers.get());
       if (selection != 0 && selection <= filteredVideoList.size()) {
         // Handle input
         this.playVideo(filteredVideoList.get(selection - 1).getVideoId());
@@ -263,17 +513,17 @@ public class VideoPlayer {
     if(Objects.equals(this.currentPlayingVideoId, videoId) || this.currentVideoPaused)
       this.stopVideo();
 
-    this.videoLibrary.flagVideo(videoId, null);
+    this.videoLibrary.flagVideo(videoId, null, this.out);
   }
 
   public void flagVideo(String videoId, String reason) {
     if(Objects.equals(this.currentPlayingVideoId, videoId) || this.currentVideoPaused)
       this.stopVideo();
 
-    this.videoLibrary.flagVideo(videoId, reason);
+    this.videoLibrary.flagVideo(videoId, reason, this.out);
   }
 
   public void allowVideo(String videoId) {
-    this.videoLibrary.allowVideo(videoId);
+    this.videoLibrary.allowVideo(videoId, this.out);
   }
 }
\ No newline at end of file
@@ -1,36 +1,218 @@
 package com.google;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
 
-/** A class used to represent a Playlist */
+/**
+ * A class used to represent a Playlist. Videos are held as the ordinals {@link VideoLibrary} gave them, so showing a
+ * playlist reads the catalog by index rather than looking up ids.
+ *
+ * Changes are made holding the playlist's lock, and a change spanning several calls holds the lock across them. Each
+ * change publishes a new immutable version of the videos, so readers get a consistent snapshot from
+ * {@link #getVideos()} without locking.
+ */
 class VideoPlaylist {
 
-    public String title;
-    public List<String> videosList;
+    private final String owner;
+    private final String title;
+    // the current version, replaced by every change
+    private volatile PlaylistVideos videos = PlaylistVideos.EMPTY;
+    // the slot of each video in the current version, only used by changes
+    private final Slots slots = new Slots();
+    private volatile boolean deleted;
 
-    VideoPlaylist(String title, List<String> videosList) {
+    VideoPlaylist(String owner, String title) {
+        this.owner = owner;
         this.title = title;
-        this.videosList = videosList;
+    }
+
+    VideoPlaylist(String title) {
+        this(PlaylistLibrary.DEFAULT_OWNER, title);
     }
 
     public String getTitle() {
         return title;
     }
 
-    public void setTitle(String title) {
-        this.title = this.replaceWhitespace(title);
+    String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Get the current version of the videos in the playlist. It doesn't change, however the playlist is changed later.
+     */
+    PlaylistVideos getVideos() {
+        return videos;
+    }
+
+    /**
+     * Get the videos in a version of the playlist from {@link #getVideos()} that were added after the given one.
+     * Returns null if the video is not in that version.
+     */
+    PrimitiveIterator.OfInt getVideosAfter(PlaylistVideos version, int ordinal) {
+        synchronized (this) {
+            if (version == videos) {
+                int slot = slots.get(ordinal);
+                return slot < 0 ? null : version.iterator(slot + 1);
+            }
+        }
+        // the playlist has changed since, so the slots no longer describe that version: look for the video in it
+        for (int slot = version.slots() - 1; slot >= 0; slot--) {
+            if (version.get(slot) == ordinal)
+                return version.iterator(slot + 1);
+        }
+        return null;
+    }
+
+    synchronized boolean contains(int ordinal) {
+        return slots.get(ordinal) >= 0;
+    }
+
+    /**
+     * Add a video to the end of the playlist. Returns false if it is already in the playlist.
+     */
+    synchronized boolean add(int ordinal) {
+        if (slots.get(ordinal) >= 0)
+            return false;
+        slots.put(ordinal, videos.slots());
+        videos = videos.appended(ordinal);
+        return true;
+    }
+
+    /**
+     * Remove a video from the playlist. Returns false if it is not in the playlist.
+     */
+    synchronized boolean remove(int ordinal) {
+        int slot = slots.remove(ordinal);
+        if (slot < 0)
+            return false;
+        PlaylistVideos removed = videos.without(slot);
+        // once most slots are empty the videos are copied into a new version without them
+        if (removed.holes() > Math.max(removed.size(), 32))
+            removed = this.rebuild(removed);
+        videos = removed;
+        return true;
+    }
+
+    synchronized void clear() {
+        slots.clear();
+        videos = PlaylistVideos.EMPTY;
+    }
+
+    int size() {
+        return videos.size();
     }
 
-    public List<String> getVideosList() {
-        return videosList;
+    /**
+     * Returns true once the playlist has been deleted. A change that looked the playlist up before it was deleted must
+     * check this after taking the lock.
+     */
+    boolean isDeleted() {
+        return deleted;
     }
 
-    public void setVideosList(List<String> videosList) {
-        this.videosList = videosList;
+    synchronized void markDeleted() {
+        deleted = true;
     }
 
-    public String replaceWhitespace(String playListTitle){
-        playListTitle = playListTitle.replaceAll(" ", "_");
-        return playListTitle;
+    private PlaylistVideos rebuild(PlaylistVideos from) {
+        PlaylistVideos rebuilt = PlaylistVideos.EMPTY;
+        slots.clear();
+        for (PrimitiveIterator.OfInt ordinals = from.iterator(); ordinals.hasNext(); ) {
+            int ordinal = ordinals.nextInt();
+            slots.put(ordinal, rebuilt.slots());
+            rebuilt = rebuilt.appended(ordinal);
+        }
+        return rebuilt;
+    }
+
+    /**
+     * An open-addressing table from ordinal to slot, so the playlist keeps no boxed entries. Removal shifts the rest
+     * of the probe run back, so there are no tombstones.
+     */
+    private static final class Slots {
+        private static final int EMPTY = -1;
+
+        private int[] ordinals = newTable(16);
+        private int[] values = new int[16];
+        private int size;
+
+        /** Returns the slot of an ordinal, or -1 if it isn't in the table. */
+        int get(int ordinal) {
+            int mask = ordinals.length - 1;
+            for (int i = hash(ordinal) & mask; ordinals[i] != EMPTY; i = (i + 1) & mask) {
+                if (ordinals[i] == ordinal)
+                    return values[i];
+            }
+            return -1;
+        }
+
+        void put(int ordinal, int slot) {
+            if (2 * (size + 1) > ordinals.length)
+                grow();
+            int mask = ordinals.length - 1;
+            int i = hash(ordinal) & mask;
+            while (ordinals[i] != EMPTY && ordinals[i] != ordinal)
+                i = (i + 1) & mask;
+            if (ordinals[i] == EMPTY)
+                size++;
+            ordinals[i] = ordinal;
+            values[i] = slot;
+        }
+
+        /** Removes an ordinal and returns its slot, or -1 if it isn't in the table. */
+        int remove(int ordinal) {
+            int mask = ordinals.length - 1;
+            int i = hash(ordinal) & mask;
+            while (ordinals[i] != ordinal) {
+                if (ordinals[i] == EMPTY)
+                    return -1;
+                i = (i + 1) & mask;
+            }
+            int slot = values[i];
+            size--;
+            for (int gap = i, j = (i + 1) & mask; ; j = (j + 1) & mask) {
+                if (ordinals[j] == EMPTY) {
+                    ordinals[gap] = EMPTY;
+                    return slot;
+                }
+                // an entry can fill the gap if the gap lies between its home and where it is
+                int home = hash(ordinals[j]) & mask;
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    ordinals[gap] = ordinals[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+        }
+
+        void clear() {
+            ordinals = newTable(16);
+            values = new int[16];
+            size = 0;
+        }
+
+        private void grow() {
+            int[] oldOrdinals = ordinals;
+            int[] oldValues = values;
+            ordinals = newTable(oldOrdinals.length * 2);
+            values = new int[oldOrdinals.length * 2];
+            size = 0;
+            for (int i = 0; i < oldOrdinals.length; i++) {
+                if (oldOrdinals[i] != EMPTY)
+                    put(oldOrdinals[i], oldValues[i]);
+            }
+        }
+
+        private static int[] newTable(int capacity) {
+            int[] table = new int[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+
+        private static int hash(int ordinal) {
+            int hash = ordinal * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
     }
 }
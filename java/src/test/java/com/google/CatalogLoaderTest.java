@@ -0,0 +1,93 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CatalogLoaderTest {
+
+  @TempDir
+  Path tempDir;
+
+  private List<List<Object>> load(String content) throws IOException {
+    Path file = tempDir.resolve("videos.txt");
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    List<List<Object>> records = new ArrayList<>();
+    CatalogLoader.load(file, (title, id, tags) -> records.add(List.of(title, id, tags)));
+    return records;
+  }
+
+  @Test
+  public void testParsesRecordsWithAndWithoutTags() throws IOException {
+    var records = load("Funny Dogs | funny_dogs_video_id |  #dog , #animal\n"
+        + "Video about nothing | nothing_video_id |");
+
+    assertEquals(2, records.size());
+    assertEquals(List.of("Funny Dogs", "funny_dogs_video_id", List.of("#dog", "#animal")),
+        records.get(0));
+    assertEquals(List.of("Video about nothing", "nothing_video_id", List.of()), records.get(1));
+  }
+
+  @Test
+  public void testHandlesCrlfBlankLinesAndUnicode() throws IOException {
+    var records = load("Caf\u00e9 | cafe_id | #caf\u00e9\r\n\r\nno id here\r\nLast | last_id\r\n");
+
+    assertEquals(2, records.size());
+    assertEquals(List.of("Caf\u00e9", "cafe_id", List.of("#caf\u00e9")), records.get(0));
+    assertEquals(List.of("Last", "last_id", List.of()), records.get(1));
+  }
+
+  @Test
+  public void testReportsThroughput() throws IOException {
+    Path file = tempDir.resolve("videos.txt");
+    Files.write(file, "A | a | #x\nB | b | #y\n".getBytes(StandardCharsets.UTF_8));
+
+    var stats = CatalogLoader.load(file, (title, id, tags) -> { });
+
+    assertEquals(2, stats.getLines());
+    assertEquals(Files.size(file), stats.getBytes());
+    assertTrue(stats.getLinesPerSecond() > 0);
+  }
+
+  @Test
+  public void testParallelLoadMatchesSequentialLoad() throws IOException {
+    Path file = tempDir.resolve("videos.txt");
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 200_000; i++) {
+      // every 1000th row re-uses an earlier id, so duplicates span chunks
+      int id = i % 1000 == 999 ? i / 2 : i;
+      content.append("Video number ").append(i).append(" | video_").append(id)
+          .append(" | #tag").append(i % 7).append(" , #all\n");
+    }
+    Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+    VideoCatalog sequential = new VideoCatalog();
+    var sequentialStats = CatalogLoader.load(file, sequential::add);
+    VideoCatalog parallel = new VideoCatalog();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    CatalogLoader.Stats parallelStats;
+    try {
+      parallelStats = CatalogLoader.loadParallel(file, parallel, pool);
+    } finally {
+      pool.shutdown();
+    }
+
+    assertEquals(sequentialStats.getLines(), parallelStats.getLines());
+    assertEquals(sequential.size(), parallel.size());
+    for (int ordinal = 0; ordinal < sequential.size(); ordinal++) {
+      assertEquals(sequential.videoId(ordinal), parallel.videoId(ordinal));
+      assertEquals(sequential.title(ordinal), parallel.title(ordinal));
+      assertEquals(sequential.tags(ordinal), parallel.tags(ordinal));
+    }
+    assertEquals("Video number 1999", parallel.title(parallel.ordinalOf("video_999")));
+  }
+}
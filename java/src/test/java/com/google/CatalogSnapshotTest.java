@@ -0,0 +1,112 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CatalogSnapshotTest {
+
+  @TempDir
+  Path tempDir;
+
+  private Path source;
+  private Path snapshot;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    source = tempDir.resolve("videos.txt");
+    snapshot = tempDir.resolve("videos.snapshot");
+    Files.write(source, ("Funny Dogs | funny_dogs_video_id |  #dog , #animal\n"
+        + "Amazing Cats | amazing_cats_video_id |  #cat , #animal\n"
+        + "Video about nothing | nothing_video_id |\n").getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    VideoCatalog catalog = new VideoCatalog();
+    CatalogLoader.load(source, catalog::add);
+    CatalogSnapshot.write(snapshot, source, catalog);
+
+    VideoCatalog mapped = CatalogSnapshot.read(snapshot, source);
+
+    assertNotNull(mapped);
+    assertEquals(3, mapped.size());
+    int ordinal = mapped.ordinalOf("amazing_cats_video_id");
+    assertEquals("Amazing Cats", mapped.title(ordinal));
+    assertEquals(List.of("#cat", "#animal"), mapped.tags(ordinal));
+    assertTrue(mapped.tags(mapped.ordinalOf("nothing_video_id")).isEmpty());
+
+    // the mapped catalog keeps growing like a parsed one
+    assertEquals(3, mapped.add("New", "new_id", List.of("#animal", "#new")));
+    assertEquals(List.of("#animal", "#new"), mapped.tags(mapped.ordinalOf("new_id")));
+  }
+
+  @Test
+  public void testMappedColumnsAreCopiedOnWriteAndLeaveTheFileAlone() throws IOException {
+    VideoCatalog catalog = new VideoCatalog();
+    CatalogLoader.load(source, catalog::add);
+    CatalogSnapshot.write(snapshot, source, catalog);
+    byte[] written = Files.readAllBytes(snapshot);
+
+    VideoCatalog mapped = CatalogSnapshot.read(snapshot, source);
+    assertEquals("Funny Dogs (funny_dogs_video_id) [#dog #animal]", mapped.display(0));
+    // a shorter title is written over the old one, a longer one and more tags at the end of the arenas
+    mapped.add("Dogs", "funny_dogs_video_id", List.of("#dog"));
+    mapped.add("Amazing Cats and Kittens", "amazing_cats_video_id", List.of("#cat", "#animal", "#kitten"));
+
+    assertEquals("Dogs (funny_dogs_video_id) [#dog]", mapped.display(0));
+    assertEquals("Amazing Cats and Kittens", mapped.title(1));
+    assertEquals(List.of("#cat", "#animal", "#kitten"), mapped.tags(1));
+    assertEquals("Video about nothing", mapped.title(mapped.ordinalOf("nothing_video_id")));
+    assertTrue(Arrays.equals(written, Files.readAllBytes(snapshot)));
+
+    Path rewritten = tempDir.resolve("rewritten.snapshot");
+    CatalogSnapshot.write(rewritten, source, mapped);
+    VideoCatalog reread = CatalogSnapshot.read(rewritten, source);
+    assertEquals("Dogs", reread.title(0));
+    assertEquals(List.of("#cat", "#animal", "#kitten"), reread.tags(1));
+  }
+
+  @Test
+  public void testStaleOrCorruptSnapshotIsIgnored() throws IOException {
+    VideoCatalog catalog = new VideoCatalog();
+    CatalogLoader.load(source, catalog::add);
+    CatalogSnapshot.write(snapshot, source, catalog);
+
+    Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5000));
+    assertNull(CatalogSnapshot.read(snapshot, source));
+
+    CatalogSnapshot.write(snapshot, source, catalog);
+    byte[] bytes = Files.readAllBytes(snapshot);
+    bytes[bytes.length - 1] ^= 1;
+    Files.write(snapshot, bytes);
+    assertNull(CatalogSnapshot.read(snapshot, source));
+
+    assertNull(CatalogSnapshot.read(tempDir.resolve("missing.snapshot"), source));
+  }
+
+  @Test
+  public void testLibraryWritesAndReusesSnapshot() throws IOException {
+    VideoLibrary parsed = new VideoLibrary(source, snapshot);
+    assertTrue(Files.exists(snapshot));
+
+    VideoLibrary mapped = new VideoLibrary(source, snapshot);
+
+    assertEquals(Files.size(snapshot), mapped.getLoadStats().getBytes());
+    assertEquals(3, mapped.getVideos().size());
+    assertEquals(parsed.searchVideosByTag("#animal").size(), mapped.searchVideosByTag("#animal").size());
+    assertEquals("Amazing Cats", mapped.getVideo("amazing_cats_video_id").getTitle());
+  }
+}
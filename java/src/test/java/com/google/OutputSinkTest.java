@@ -0,0 +1,69 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class OutputSinkTest {
+
+  private final VideoLibrary videoLibrary = new VideoLibrary();
+
+  private VideoPlayer player(OutputSink out) {
+    return new VideoPlayer(videoLibrary, new PlaylistLibrary(videoLibrary, PlaylistLimits.NONE, out), out);
+  }
+
+  @Test
+  public void testBufferedSinkWritesOnceTheCommandIsDone() {
+    var outputStream = new ByteArrayOutputStream();
+    var videoPlayer = player(new OutputSink.Buffered(new PrintStream(outputStream)));
+    var parser = new CommandParser(videoPlayer);
+
+    videoPlayer.createPlaylist("my_PLAYlist");
+    videoPlayer.addVideoToPlaylist("my_playlist", "amazing_cats_video_id");
+    assertEquals("", outputStream.toString());
+
+    parser.executeCommand(List.of("SHOW_PLAYLIST", "my_playlist"));
+    assertEquals(List.of(
+        "Successfully created new playlist: my_PLAYlist",
+        "Added video to my_playlist: Amazing Cats",
+        "Showing playlist: my_playlist",
+        "Amazing Cats (amazing_cats_video_id) [#cat #animal] "),
+        outputStream.toString().lines().collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testStructuredSinkGetsListedObjects() {
+    List<Object> results = new ArrayList<>();
+    var videoPlayer = player(new OutputSink.Structured(results::add));
+
+    videoPlayer.createPlaylist("my_playlist");
+    videoPlayer.addVideoToPlaylist("my_playlist", "amazing_cats_video_id");
+    results.clear();
+    videoPlayer.showAllVideos(new Page(2, null));
+    videoPlayer.showPlaylistsContaining("amazing_cats_video_id");
+
+    assertEquals(List.of(
+        "Here's a list of all available videos:",
+        "video amazing_cats_video_id",
+        "video another_cat_video_id",
+        "Next cursor: another_cat_video_id",
+        "Playlists containing Amazing Cats:",
+        "playlist my_playlist"),
+        results.stream().map(OutputSinkTest::describe).collect(Collectors.toList()));
+  }
+
+  private static String describe(Object result) {
+    if (result instanceof Video) {
+      return "video " + ((Video) result).getVideoId();
+    }
+    if (result instanceof VideoPlaylist) {
+      return "playlist " + ((VideoPlaylist) result).getTitle();
+    }
+    return (String) result;
+  }
+}
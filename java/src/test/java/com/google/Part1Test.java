@@ -2,10 +2,12 @@ package com.google;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.List;
 import java.util.regex.Pattern;
 import org.junit.jupiter.api.Test;
 
@@ -41,6 +43,28 @@ public class Part1Test extends TestBase {
         containsString("Video about nothing (nothing_video_id) []"));
   }
 
+  @Test
+  public void testShowAllVideosByPage() {
+    CommandParser parser = new CommandParser(videoPlayer);
+    parser.executeCommand(List.of("SHOW_ALL_VIDEOS", "PAGE", "2"));
+    parser.executeCommand(List.of("SHOW_ALL_VIDEOS", "page", "2", "after", "another_cat_video_id"));
+    parser.executeCommand(List.of("SHOW_ALL_VIDEOS", "PAGE", "2", "AFTER", "life_at_google_video_id"));
+    parser.executeCommand(List.of("SHOW_ALL_VIDEOS", "PAGE", "2", "AFTER", "does_not_exist"));
+    parser.executeCommand(List.of("SHOW_ALL_VIDEOS", "PAGE", "0"));
+
+    String[] lines = getOutputLines();
+    assertEquals(12, lines.length, outputStream.toString());
+    assertThat(lines[1], containsString("Amazing Cats (amazing_cats_video_id)"));
+    assertThat(lines[2], containsString("Another Cat Video (another_cat_video_id)"));
+    assertEquals("Next cursor: another_cat_video_id", lines[3]);
+    assertThat(lines[5], containsString("Funny Dogs (funny_dogs_video_id)"));
+    assertThat(lines[6], containsString("Life at Google (life_at_google_video_id)"));
+    assertEquals("Next cursor: life_at_google_video_id", lines[7]);
+    assertThat(lines[9], containsString("Video about nothing (nothing_video_id)"));
+    assertEquals("Cannot show videos after does_not_exist: Video does not exist", lines[10]);
+    assertThat(lines[11], containsString("Please enter PAGE followed by a positive page size"));
+  }
+
   @Test
   public void testPlayVideo() {
     videoPlayer.playVideo("amazing_cats_video_id");
@@ -242,4 +266,49 @@ public class Part1Test extends TestBase {
     assertThat(outputStream.toString(),
         containsString("Cannot continue video: No video is currently playing"));
   }
+
+  @Test
+  public void testRecentlyPlayedAndHistory() {
+    videoPlayer.showRecentlyPlayed();
+    videoPlayer.showHistory();
+    videoPlayer.playVideo("amazing_cats_video_id");
+    videoPlayer.playVideo("funny_dogs_video_id");
+    videoPlayer.pauseVideo();
+    videoPlayer.continueVideo();
+    videoPlayer.playVideo("amazing_cats_video_id");
+    outputStream.reset();
+    videoPlayer.showRecentlyPlayed();
+    videoPlayer.showHistory();
+
+    String[] lines = getOutputLines();
+    assertEquals(11, lines.length, outputStream.toString());
+    assertEquals("Recently played videos:", lines[0]);
+    assertEquals("Amazing Cats (amazing_cats_video_id) [#cat #animal] ", lines[1]);
+    assertEquals("Funny Dogs (funny_dogs_video_id) [#dog #animal] ", lines[2]);
+    assertEquals("Playback history:", lines[3]);
+    assertThat(lines[4], endsWith(" Played: Amazing Cats"));
+    assertThat(lines[5], endsWith(" Stopped: Funny Dogs"));
+    assertThat(lines[6], endsWith(" Continued: Funny Dogs"));
+    assertThat(lines[7], endsWith(" Paused: Funny Dogs"));
+    assertThat(lines[8], endsWith(" Played: Funny Dogs"));
+    assertThat(lines[9], endsWith(" Stopped: Amazing Cats"));
+    assertThat(lines[10], endsWith(" Played: Amazing Cats"));
+  }
+
+  @Test
+  public void testHistoryKeepsTheLastEvents() {
+    videoPlayer.showRecentlyPlayed();
+    videoPlayer.showHistory();
+    for (int i = 0; i < 100; i++) {
+      videoPlayer.playVideo(i % 2 == 0 ? "amazing_cats_video_id" : "funny_dogs_video_id");
+    }
+    videoPlayer.showHistory();
+
+    String[] lines = getOutputLines();
+    assertEquals("No videos played yet", lines[0]);
+    assertEquals("No playback history yet", lines[1]);
+    // each play but the first also stops the video before it
+    assertEquals(2 + 199 + 1 + PlaybackHistory.CAPACITY, lines.length);
+    assertThat(lines[lines.length - 1], endsWith(" Stopped: Funny Dogs"));
+  }
 }
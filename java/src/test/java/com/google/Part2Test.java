@@ -1,5 +1,6 @@
 package com.google;
 
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -118,6 +119,38 @@ public class Part2Test extends TestBase {
         containsString("Amazing Cats (amazing_cats_video_id) [#cat #animal]"));
   }
 
+  @Test
+  public void testPlaylistStats() {
+    videoPlayer.createPlaylist("my_playlist");
+    videoPlayer.addVideoToPlaylist("my_playlist", "amazing_cats_video_id");
+    new CommandParser(videoPlayer).executeCommand(List.of("PLAYLIST_STATS"));
+
+    var lines = getOutputLines();
+    assertEquals(5, lines.length, outputStream.toString());
+    assertEquals("Your playlists: 1 playlists, 1 videos, about 324 B", lines[2]);
+    assertEquals("All playlists: 1 owners, 1 playlists, 1 videos, about 324 B", lines[3]);
+    assertEquals("No playlist limits set", lines[4]);
+  }
+
+  @Test
+  public void testShowPlaylistByPage() {
+    videoPlayer.createPlaylist("my_playlist");
+    videoPlayer.addVideosToPlaylist("my_playlist",
+        List.of("life_at_google_video_id", "amazing_cats_video_id", "funny_dogs_video_id"));
+    videoPlayer.showPlaylist("my_playlist", new Page(2, null));
+    videoPlayer.showPlaylist("my_playlist", new Page(2, "amazing_cats_video_id"));
+    videoPlayer.showPlaylist("my_playlist", new Page(2, "nothing_video_id"));
+
+    var lines = getOutputLines();
+    assertEquals(9, lines.length, outputStream.toString());
+    assertThat(lines[3], containsString("Life at Google (life_at_google_video_id)"));
+    assertThat(lines[4], containsString("Amazing Cats (amazing_cats_video_id)"));
+    assertEquals("Next cursor: amazing_cats_video_id", lines[5]);
+    assertThat(lines[6], containsString("Showing playlist: my_playlist"));
+    assertThat(lines[7], containsString("Funny Dogs (funny_dogs_video_id)"));
+    assertEquals("Cannot show playlist my_playlist after nothing_video_id: Video is not in playlist", lines[8]);
+  }
+
   @Test
   public void showPlaylistAfterRemoveAVideoFromPlaylistThenReAdd() {
     videoPlayer.createPlaylist("mY_plaYList");
@@ -245,4 +278,48 @@ public class Part2Test extends TestBase {
     assertThat(outputStream.toString(),
         containsString("Cannot delete playlist my_playlist: Playlist does not exist"));
   }
+
+  @Test
+  public void testShowPlaylistsContaining() {
+    videoPlayer.createPlaylist("b_playlist");
+    videoPlayer.createPlaylist("a_playlist");
+    videoPlayer.createPlaylist("c_playlist");
+    videoPlayer.addVideoToPlaylist("b_playlist", "amazing_cats_video_id");
+    videoPlayer.addVideoToPlaylist("a_playlist", "amazing_cats_video_id");
+    videoPlayer.addVideoToPlaylist("c_playlist", "amazing_cats_video_id");
+    videoPlayer.removeFromPlaylist("c_playlist", "amazing_cats_video_id");
+    videoPlayer.showPlaylistsContaining("amazing_cats_video_id");
+    videoPlayer.showPlaylistsContaining("funny_dogs_video_id");
+    videoPlayer.showPlaylistsContaining("does_not_exist");
+
+    String[] lines = getOutputLines();
+    assertEquals(12, lines.length, outputStream.toString());
+    assertThat(lines[7], containsString("Playlists containing Amazing Cats:"));
+    assertThat(lines[8], containsString("a_playlist"));
+    assertThat(lines[9], containsString("b_playlist"));
+    assertThat(lines[10], containsString("Funny Dogs is not in any playlist"));
+    assertThat(lines[11], containsString("Cannot show playlists containing does_not_exist: Video does not exist"));
+  }
+
+  @Test
+  public void testBulkAddAndRemoveToPlaylist() {
+    videoPlayer.createPlaylist("my_playlist");
+    videoPlayer.addVideoToPlaylist("my_playlist", "funny_dogs_video_id");
+    videoPlayer.flagVideo("nothing_video_id", "dont_like");
+    videoPlayer.addVideosToPlaylist("my_PLAYLIST", List.of("amazing_cats_video_id", "funny_dogs_video_id",
+        "some_other_video_id", "life_at_google_video_id", "nothing_video_id", "another_missing_id"));
+    videoPlayer.removeVideosFromPlaylist("my_playlist", List.of("amazing_cats_video_id", "another_cat_video_id"));
+    videoPlayer.addVideosToPlaylist("another_playlist", List.of("amazing_cats_video_id"));
+
+    String[] lines = getOutputLines();
+    assertEquals(10, lines.length, outputStream.toString());
+    assertThat(lines[3], containsString("Added 2 videos to my_PLAYLIST"));
+    assertThat(lines[4], containsString("Skipped 1 video: Video already added (funny_dogs_video_id)"));
+    assertThat(lines[5], containsString(
+        "Skipped 2 videos: Video does not exist (some_other_video_id, another_missing_id)"));
+    assertThat(lines[6], containsString("Skipped 1 video: Video is currently flagged (nothing_video_id)"));
+    assertThat(lines[7], containsString("Removed 1 video from my_playlist"));
+    assertThat(lines[8], containsString("Skipped 1 video: Video is not in playlist (another_cat_video_id)"));
+    assertThat(lines[9], containsString("Cannot add videos to another_playlist: Playlist does not exist"));
+  }
 }
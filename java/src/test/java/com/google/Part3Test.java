@@ -1,5 +1,6 @@
 package com.google;
 
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -28,6 +29,43 @@ public class Part3Test extends TestBase {
     assertThat(outputStream.toString(), not(containsString("Playing video")));
   }
 
+  @Test
+  public void testSearchVideosWithTagByPage() {
+    setInput("No");
+    new CommandParser(videoPlayer).executeCommand(
+        List.of("SEARCH_VIDEOS_WITH_TAG", "#animal", "PAGE", "1", "AFTER", "amazing_cats_video_id"));
+
+    var lines = getOutputLines();
+    assertEquals(5, lines.length, outputStream.toString());
+    assertThat(lines[0], containsString("Here are the results for #animal:"));
+    assertThat(lines[1], containsString("1) Another Cat Video (another_cat_video_id) [#cat #animal]"));
+    assertEquals("Next cursor: another_cat_video_id", lines[2]);
+  }
+
+  @Test
+  public void testSearchVideosEndingLikePageOptions() {
+    setInput("No");
+    var parser = new CommandParser(videoPlayer);
+    parser.executeCommand(List.of("SEARCH_VIDEOS", "page", "2"));
+    parser.executeCommand(List.of("SEARCH_VIDEOS", "cat", "PAGE", "x"));
+
+    var lines = getOutputLines();
+    assertEquals("No search results for page", lines[0]);
+    assertThat(lines[1], containsString("Here are the results for cat:"));
+    assertEquals(6, lines.length, outputStream.toString());
+  }
+
+  @Test
+  public void testSearchVideosLastPageHasNoCursor() {
+    setInput("1");
+    videoPlayer.searchVideos("cat", new Page(1, "amazing_cats_video_id"));
+
+    var lines = getOutputLines();
+    assertEquals(5, lines.length, outputStream.toString());
+    assertThat(lines[1], containsString("1) Another Cat Video (another_cat_video_id) [#cat #animal]"));
+    assertThat(lines[4], containsString("Playing video: Another Cat Video"));
+  }
+
   @Test
   public void testSearchVideosAndPlayAnswer() {
     setInput("2");
@@ -155,4 +193,16 @@ public class Part3Test extends TestBase {
     assertEquals(1, getOutputLines().length);
     assertThat(outputStream.toString(), containsString("No search results for #blah"));
   }
+
+  @Test
+  public void testSearchVideosWithTagQuery() {
+    setInput("no");
+
+    videoPlayer.searchVideosWithTag(List.of("#animal", "NOT", "#cat"));
+
+    var lines = getOutputLines();
+    assertEquals(4, lines.length, outputStream.toString());
+    assertThat(lines[0], containsString("Here are the results for #animal NOT #cat:"));
+    assertThat(lines[1], containsString("1) Funny Dogs (funny_dogs_video_id) [#dog #animal]"));
+  }
 }
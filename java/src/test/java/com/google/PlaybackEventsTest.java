@@ -0,0 +1,72 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class PlaybackEventsTest {
+
+  @Test
+  public void testTailSkipsOverwrittenEvents() {
+    PlaybackEvents events = new PlaybackEvents(4);
+    events.publish("early", PlaybackEvent.Kind.PLAYED, "missed_video_id");
+    PlaybackEvents.Tail tail = events.tail();
+    assertNull(tail.poll());
+
+    for (int i = 0; i < 10; i++) {
+      events.publish("session", PlaybackEvent.Kind.PLAYED, "video_" + i);
+    }
+    List<String> videoIds = new ArrayList<>();
+    for (PlaybackEvent event = tail.poll(); event != null; event = tail.poll()) {
+      videoIds.add(event.getVideoId());
+    }
+
+    assertEquals(List.of("video_6", "video_7", "video_8", "video_9"), videoIds);
+    assertEquals(6, tail.missed());
+    assertEquals(11, events.published());
+  }
+
+  @Test
+  public void testConcurrentPublishersAreReadInOrder() throws InterruptedException {
+    PlaybackEvents events = new PlaybackEvents(1 << 16);
+    PlaybackEvents.Tail tail = events.tail();
+    int publishers = 4;
+    int each = 10_000;
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < publishers; p++) {
+      String sessionId = "session_" + p;
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < each; i++) {
+          events.publish(sessionId, PlaybackEvent.Kind.PLAYED, String.valueOf(i));
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+
+    // read while the publishers run; every event is seen once, in sequence, and each session's in its own order
+    Map<String, Integer> next = new HashMap<>();
+    long sequence = 0;
+    while (sequence < publishers * each) {
+      PlaybackEvent event = tail.poll();
+      if (event == null) {
+        Thread.onSpinWait();
+        continue;
+      }
+      assertEquals(sequence++, event.getSequence());
+      int expected = next.getOrDefault(event.getSessionId(), 0);
+      assertEquals(String.valueOf(expected), event.getVideoId());
+      next.put(event.getSessionId(), expected + 1);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, tail.missed());
+    assertNull(tail.poll());
+  }
+}
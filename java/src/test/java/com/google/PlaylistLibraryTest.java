@@ -0,0 +1,320 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PlaylistLibraryTest {
+
+  @TempDir
+  Path tempDir;
+
+  private VideoLibrary videoLibrary;
+  private PlaylistLibrary playlistLibrary;
+
+  @BeforeEach
+  public void setUp() {
+    System.setOut(new PrintStream(new ByteArrayOutputStream()));
+    videoLibrary = new VideoLibrary();
+    playlistLibrary = new PlaylistLibrary(videoLibrary);
+  }
+
+  @Test
+  public void testLookupIgnoresCaseAndKeepsDisplayTitle() {
+    assertTrue(playlistLibrary.createPlayList("My_Playlist"));
+    assertFalse(playlistLibrary.createPlayList("MY_playlist"));
+
+    VideoPlaylist playlist = playlistLibrary.getVideoPlayList("my_PLAYLIST");
+    assertEquals("My_Playlist", playlist.getTitle());
+    assertSame(playlist, playlistLibrary.getVideoPlayList("My_Playlist"));
+    assertEquals(1, playlistLibrary.getVideoPlayLists().size());
+  }
+
+  @Test
+  public void testDeleteIgnoresCase() {
+    playlistLibrary.createPlayList("My_Playlist");
+    playlistLibrary.deletePlayList("my_playlist");
+
+    assertNull(playlistLibrary.getVideoPlayList("My_Playlist"));
+    assertTrue(playlistLibrary.getVideoPlayLists().isEmpty());
+    assertTrue(playlistLibrary.createPlayList("my_playlist"));
+  }
+
+  @Test
+  public void testPlaylistKeepsInsertionOrderAndRejectsDuplicates() {
+    VideoPlaylist playlist = new VideoPlaylist("long");
+    for (int i = 0; i < 100_000; i++) {
+      assertTrue(playlist.add(i));
+    }
+    assertFalse(playlist.add(5));
+    assertTrue(playlist.remove(5));
+    assertFalse(playlist.remove(5));
+    assertTrue(playlist.add(5));
+
+    List<Integer> ordinals = ordinals(playlist.getVideos());
+    assertEquals(100_000, playlist.size());
+    assertEquals(List.of(0, 1, 2, 3, 4, 6), ordinals.subList(0, 6));
+    assertEquals(5, ordinals.get(ordinals.size() - 1));
+  }
+
+  @Test
+  public void testVersionsAreUnchangedByLaterChanges() {
+    VideoPlaylist playlist = new VideoPlaylist("versions");
+    Set<Integer> model = new LinkedHashSet<>();
+    List<PlaylistVideos> versions = new ArrayList<>();
+    List<List<Integer>> expected = new ArrayList<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 50_000; i++) {
+      int ordinal = random.nextInt(3_000);
+      // add more than remove at first, then mostly remove so the playlist rebuilds its version
+      if (random.nextInt(10) < (i < 25_000 ? 7 : 2)) {
+        assertEquals(model.add(ordinal), playlist.add(ordinal));
+      } else {
+        assertEquals(model.remove(ordinal), playlist.remove(ordinal));
+      }
+      if (i % 5_000 == 0) {
+        versions.add(playlist.getVideos());
+        expected.add(new ArrayList<>(model));
+      }
+    }
+
+    assertEquals(new ArrayList<>(model), ordinals(playlist.getVideos()));
+    assertEquals(model.size(), playlist.size());
+    assertTrue(playlist.getVideos().holes() <= Math.max(playlist.size(), 32));
+    for (int i = 0; i < versions.size(); i++) {
+      assertEquals(expected.get(i), ordinals(versions.get(i)));
+      assertEquals(expected.get(i).size(), versions.get(i).size());
+    }
+  }
+
+  @Test
+  public void testVideosAfterAreReadFromTheGivenVersion() {
+    VideoPlaylist playlist = new VideoPlaylist("cursor");
+    for (int ordinal = 0; ordinal < 100; ordinal++) {
+      playlist.add(ordinal);
+    }
+    PlaylistVideos version = playlist.getVideos();
+    assertEquals(List.of(98, 99), ordinals(playlist.getVideosAfter(version, 97)));
+
+    // enough removals for the playlist to rebuild, so the current slots differ from the old version's
+    for (int ordinal = 0; ordinal < 90; ordinal++) {
+      playlist.remove(ordinal);
+    }
+    playlist.add(100);
+    assertEquals(List.of(98, 99), ordinals(playlist.getVideosAfter(version, 97)));
+    assertEquals(List.of(11, 12), ordinals(playlist.getVideosAfter(version, 10)).subList(0, 2));
+    assertNull(playlist.getVideosAfter(version, 100));
+    assertNull(playlist.getVideosAfter(playlist.getVideos(), 10));
+    assertEquals(List.of(99, 100), ordinals(playlist.getVideosAfter(playlist.getVideos(), 98)));
+  }
+
+  @Test
+  public void testAccountingFollowsChangesAndReplay() throws IOException {
+    Path file = tempDir.resolve("playlists.log");
+    PlaylistLibrary logged = new PlaylistLibrary(videoLibrary, file);
+    PlaylistLibrary other = logged.forOwner("other");
+    logged.createPlayList("one");
+    logged.createPlayList("two");
+    other.createPlayList("one");
+    logged.addVideosToPlayList("one", List.of("amazing_cats_video_id", "funny_dogs_video_id", "nothing_video_id"),
+        videoLibrary::getVideo);
+    logged.addVideoToPlayList("two", videoLibrary.getVideo("amazing_cats_video_id"));
+    other.addVideoToPlayList("one", videoLibrary.getVideo("amazing_cats_video_id"));
+    logged.removeVideoFromPlayList("one", videoLibrary.getVideo("nothing_video_id"));
+    logged.removeAllVideosFromPlayList("two");
+    logged.deletePlayList("two");
+
+    assertEquals(1, logged.getUsage().playlists());
+    assertEquals(2, logged.getUsage().entries());
+    assertEquals(2, logged.getTotalUsage().playlists());
+    assertEquals(3, logged.getTotalUsage().entries());
+    assertEquals(2, logged.getOwnersWithPlaylists());
+    assertEquals(logged.getUsage().bytes() + other.getUsage().bytes(), logged.getTotalUsage().bytes());
+    long bytes = logged.getTotalUsage().bytes();
+    logged.close();
+
+    PlaylistLibrary recovered = new PlaylistLibrary(videoLibrary, file);
+    assertEquals(2, recovered.getTotalUsage().playlists());
+    assertEquals(3, recovered.getTotalUsage().entries());
+    assertEquals(bytes, recovered.getTotalUsage().bytes());
+    recovered.close();
+  }
+
+  @Test
+  public void testLimitsWarnAndRefuse() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(output));
+    PlaylistLibrary limited = new PlaylistLibrary(videoLibrary, new PlaylistLimits(1, 2, 2, 3));
+
+    assertTrue(limited.createPlayList("one"));
+    assertTrue(limited.createPlayList("two"));
+    assertFalse(limited.createPlayList("three"));
+    assertTrue(limited.forOwner("other").createPlayList("one"));
+    assertEquals(3, limited.addVideosToPlayList("one",
+        List.of("amazing_cats_video_id", "funny_dogs_video_id", "nothing_video_id", "life_at_google_video_id"),
+        videoLibrary::getVideo));
+    assertFalse(limited.addVideoToPlayList("two", videoLibrary.getVideo("amazing_cats_video_id")));
+    limited.removeVideoFromPlayList("one", videoLibrary.getVideo("nothing_video_id"));
+    assertTrue(limited.addVideoToPlayList("two", videoLibrary.getVideo("amazing_cats_video_id")));
+
+    String[] lines = output.toString().split("\\r?\\n");
+    assertEquals(List.of(
+        "Successfully created new playlist: one",
+        "Successfully created new playlist: two",
+        "Warning: 2 playlists is over the soft limit of 1",
+        "Cannot create playlist: Playlist limit of 2 reached",
+        "Successfully created new playlist: one",
+        "Added 3 videos to one",
+        "Skipped 1 video: Playlist entry limit reached (life_at_google_video_id)",
+        "Warning: 2 playlists is over the soft limit of 1",
+        "Warning: 3 videos in playlists is over the soft limit of 2",
+        "Cannot add video to two: Playlist entry limit of 3 reached",
+        "Removed video from one: Video about nothing",
+        "Added video to two: Amazing Cats",
+        "Warning: 2 playlists is over the soft limit of 1",
+        "Warning: 3 videos in playlists is over the soft limit of 2"), List.of(lines));
+  }
+
+  @Test
+  public void testReverseIndexFollowsPlaylistChanges() {
+    Video cats = videoLibrary.getVideo("amazing_cats_video_id");
+    playlistLibrary.createPlayList("one");
+    playlistLibrary.createPlayList("two");
+    playlistLibrary.createPlayList("three");
+    playlistLibrary.addVideoToPlayList("one", cats);
+    playlistLibrary.addVideoToPlayList("two", cats);
+    playlistLibrary.addVideoToPlayList("three", cats);
+
+    playlistLibrary.removeVideoFromPlayList("one", cats);
+    playlistLibrary.removeAllVideosFromPlayList("two");
+    assertEquals(List.of("three"), titles(playlistLibrary.getVideoPlayListsContaining("amazing_cats_video_id")));
+
+    playlistLibrary.deletePlayList("THREE");
+    assertTrue(playlistLibrary.getVideoPlayListsContaining("amazing_cats_video_id").isEmpty());
+  }
+
+  @Test
+  public void testReverseIndexIsKeptPerOwner() {
+    Video cats = videoLibrary.getVideo("amazing_cats_video_id");
+    PlaylistLibrary alice = playlistLibrary.forOwner("alice");
+    PlaylistLibrary bob = playlistLibrary.forOwner("bob");
+    for (int i = 0; i < 500; i++) {
+      alice.createPlayList("alice_" + i);
+      alice.addVideoToPlayList("alice_" + i, cats);
+      bob.createPlayList("bob_" + i);
+      bob.addVideoToPlayList("bob_" + i, cats);
+    }
+    for (int i = 0; i < 500; i += 2) {
+      alice.removeVideoFromPlayList("alice_" + i, cats);
+    }
+
+    Set<String> aliceTitles = new HashSet<>(titles(alice.getVideoPlayListsContaining("amazing_cats_video_id")));
+    assertEquals(250, aliceTitles.size());
+    assertTrue(aliceTitles.contains("alice_1") && !aliceTitles.contains("alice_0"));
+    assertEquals(500, bob.getVideoPlayListsContaining("amazing_cats_video_id").size());
+    assertTrue(playlistLibrary.getVideoPlayListsContaining("amazing_cats_video_id").isEmpty());
+  }
+
+  @Test
+  public void testOwnersHaveTheirOwnPlaylists() {
+    Video cats = videoLibrary.getVideo("amazing_cats_video_id");
+    PlaylistLibrary alice = playlistLibrary.forOwner("alice");
+    PlaylistLibrary bob = playlistLibrary.forOwner("bob");
+
+    assertTrue(alice.createPlayList("favourites"));
+    assertTrue(bob.createPlayList("favourites"));
+    alice.addVideoToPlayList("favourites", cats);
+
+    assertEquals(1, alice.getVideoPlayList("favourites").size());
+    assertEquals(0, bob.getVideoPlayList("favourites").size());
+    assertTrue(bob.getVideoPlayListsContaining("amazing_cats_video_id").isEmpty());
+    assertSame(alice.getVideoPlayList("favourites"), playlistLibrary.forOwner("alice").getVideoPlayList("favourites"));
+    assertTrue(playlistLibrary.getVideoPlayLists().isEmpty());
+  }
+
+  @Test
+  public void testConcurrentChangesAreAllAppliedAndLogged() throws Exception {
+    List<Video> videos = videoLibrary.getVideos();
+    Path file = tempDir.resolve("playlists.log");
+    PlaylistLibrary shared = new PlaylistLibrary(videoLibrary, file);
+    shared.createPlayList("shared");
+
+    // every thread adds all videos to the shared playlist and its own one, then removes every other video from both
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      PlaylistLibrary owner = t % 2 == 0 ? shared : shared.forOwner("user_" + t);
+      String own = "own_" + t;
+      futures.add(executor.submit(() -> {
+        owner.createPlayList(own);
+        for (int round = 0; round < 50; round++) {
+          for (Video video : videos) {
+            shared.addVideoToPlayList("shared", video);
+            owner.addVideoToPlayList(own, video);
+          }
+          for (int i = 0; i < videos.size(); i += 2) {
+            shared.removeVideoFromPlayList("shared", videos.get(i));
+            owner.removeVideoFromPlayList(own, videos.get(i));
+          }
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    String catsId = "amazing_cats_video_id";
+    int containing = shared.getVideoPlayListsContaining(catsId).size();
+    shared.close();
+
+    PlaylistLibrary recovered = new PlaylistLibrary(videoLibrary, file);
+    List<Integer> expected = ordinals(recovered.getVideoPlayList("shared").getVideos());
+    for (int t = 0; t < 8; t++) {
+      PlaylistLibrary owner = t % 2 == 0 ? recovered : recovered.forOwner("user_" + t);
+      List<Integer> own = ordinals(owner.getVideoPlayList("own_" + t).getVideos());
+      assertEquals(videos.size() / 2, own.size());
+      assertEquals(new HashSet<>(expected), new HashSet<>(own));
+    }
+    assertEquals(containing, recovered.getVideoPlayListsContaining(catsId).size());
+    recovered.close();
+  }
+
+  private static List<Integer> ordinals(PlaylistVideos videos) {
+    List<Integer> ordinals = new ArrayList<>();
+    videos.forEach(ordinals::add);
+    return ordinals;
+  }
+
+  private static List<Integer> ordinals(PrimitiveIterator.OfInt videos) {
+    List<Integer> ordinals = new ArrayList<>();
+    videos.forEachRemaining((int ordinal) -> ordinals.add(ordinal));
+    return ordinals;
+  }
+
+  private static List<String> titles(List<VideoPlaylist> playlists) {
+    List<String> titles = new ArrayList<>();
+    playlists.forEach(playlist -> titles.add(playlist.getTitle()));
+    return titles;
+  }
+}
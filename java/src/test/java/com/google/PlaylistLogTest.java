@@ -0,0 +1,177 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PlaylistLogTest {
+
+  @TempDir
+  Path tempDir;
+
+  private Path file;
+
+  @BeforeEach
+  public void setUp() {
+    System.setOut(new PrintStream(new ByteArrayOutputStream()));
+    file = tempDir.resolve("playlists.log");
+  }
+
+  @Test
+  public void testLibraryRecoversPlaylistsFromLog() throws IOException {
+    VideoLibrary videoLibrary = new VideoLibrary();
+    Video cats = videoLibrary.getVideo("amazing_cats_video_id");
+    Video dogs = videoLibrary.getVideo("funny_dogs_video_id");
+
+    PlaylistLibrary playlistLibrary = new PlaylistLibrary(videoLibrary, file);
+    playlistLibrary.createPlayList("My_Playlist");
+    playlistLibrary.createPlayList("cleared");
+    playlistLibrary.createPlayList("deleted");
+    playlistLibrary.addVideoToPlayList("my_playlist", cats);
+    playlistLibrary.addVideoToPlayList("my_playlist", dogs);
+    playlistLibrary.removeVideoFromPlayList("my_playlist", cats);
+    playlistLibrary.addVideoToPlayList("my_playlist", cats);
+    playlistLibrary.addVideoToPlayList("cleared", cats);
+    playlistLibrary.removeAllVideosFromPlayList("cleared");
+    playlistLibrary.deletePlayList("DELETED");
+    playlistLibrary.close();
+
+    PlaylistLibrary recovered = new PlaylistLibrary(videoLibrary, file);
+    assertEquals(2, recovered.getVideoPlayLists().size());
+    VideoPlaylist playlist = recovered.getVideoPlayList("my_playlist");
+    assertEquals("My_Playlist", playlist.getTitle());
+    assertEquals(List.of("funny_dogs_video_id", "amazing_cats_video_id"), videoIds(recovered, playlist));
+    assertEquals(0, recovered.getVideoPlayList("cleared").size());
+    assertNull(recovered.getVideoPlayList("deleted"));
+    assertEquals(1, recovered.getVideoPlayListsContaining("amazing_cats_video_id").size());
+    recovered.close();
+  }
+
+  @Test
+  public void testTornRecordIsTruncated() throws IOException {
+    List<String> records = new ArrayList<>();
+    try (PlaylistLog log = PlaylistLog.open(file, recorder(records))) {
+      log.append(PlaylistLog.CREATE, "", "list", null);
+      log.append(PlaylistLog.ADD, "", "list", "a");
+      log.append(PlaylistLog.ADD, "", "list", "b");
+    }
+    long intact = Files.size(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(intact - 3);
+    }
+
+    try (PlaylistLog log = PlaylistLog.open(file, recorder(records))) {
+      assertEquals(List.of("CREATE list", "ADD list a"), records);
+      log.append(PlaylistLog.ADD, "", "list", "c");
+    }
+
+    records.clear();
+    PlaylistLog.open(file, recorder(records)).close();
+    assertEquals(List.of("CREATE list", "ADD list a", "ADD list c"), records);
+  }
+
+  @Test
+  public void testEnqueuedChangesKeepTheirOrder() throws IOException {
+    List<String> records = new ArrayList<>();
+    try (PlaylistLog log = PlaylistLog.open(file, recorder(records))) {
+      long create = log.enqueue(PlaylistLog.CREATE, "", "list", null);
+      long add = log.enqueueAll(PlaylistLog.ADD, "", "list", List.of("a", "b"));
+      long remove = log.enqueue(PlaylistLog.REMOVE, "", "list", "a");
+      assertTrue(create < add && add < remove);
+      log.awaitDurable(remove);
+      log.awaitDurable(create);
+    }
+
+    PlaylistLog.open(file, recorder(records)).close();
+    assertEquals(List.of("CREATE list", "ADD list a", "ADD list b", "REMOVE list a"), records);
+  }
+
+  @Test
+  public void testCompactionKeepsLaterChanges() throws IOException {
+    List<PlaylistLog.Entry> playlists = new ArrayList<>();
+    try (PlaylistLog log = PlaylistLog.open(file, recorder(new ArrayList<>()))) {
+      log.append(PlaylistLog.CREATE, "", "list", null);
+      for (int i = 0; i < 100; i++) {
+        log.append(PlaylistLog.ADD, "", "list", "video_" + i);
+        log.append(PlaylistLog.REMOVE, "", "list", "video_" + i);
+      }
+      log.append(PlaylistLog.ADD, "", "list", "kept");
+      playlists.add(new PlaylistLog.Entry("", "list", List.of("kept")));
+      long before = log.size();
+
+      log.compact(playlists);
+      log.append(PlaylistLog.ADD, "", "list", "later");
+      log.close();
+      assertTrue(Files.size(file) < before);
+    }
+
+    List<String> records = new ArrayList<>();
+    PlaylistLog.open(file, recorder(records)).close();
+    assertEquals(List.of("CREATE list", "ADD list kept", "ADD list later"), records);
+  }
+
+  @Test
+  public void testRecoversMillionEntryLog() throws IOException {
+    List<String> videoIds = new ArrayList<>();
+    for (int i = 0; i < 1_000_000; i++) {
+      videoIds.add("video_" + i);
+    }
+    try (PlaylistLog log = PlaylistLog.open(file, recorder(new ArrayList<>()))) {
+      log.compact(List.of(new PlaylistLog.Entry("", "big", videoIds)));
+    }
+
+    PlaylistLibrary playlistLibrary = new PlaylistLibrary(new VideoLibrary(), file);
+    VideoPlaylist playlist = playlistLibrary.getVideoPlayList("big");
+    assertEquals(1_000_000, playlist.size());
+    assertEquals(videoIds, videoIds(playlistLibrary, playlist));
+    playlistLibrary.close();
+  }
+
+  private static List<String> videoIds(PlaylistLibrary playlistLibrary, VideoPlaylist playlist) {
+    List<String> videoIds = new ArrayList<>();
+    playlistLibrary.videoIds(playlist.getVideos()).forEach(videoIds::add);
+    return videoIds;
+  }
+
+  private static PlaylistLog.Replay recorder(List<String> records) {
+    return new PlaylistLog.Replay() {
+      @Override
+      public void create(String owner, String title) {
+        records.add("CREATE " + title);
+      }
+
+      @Override
+      public void add(String owner, String title, String videoId) {
+        records.add("ADD " + title + " " + videoId);
+      }
+
+      @Override
+      public void remove(String owner, String title, String videoId) {
+        records.add("REMOVE " + title + " " + videoId);
+      }
+
+      @Override
+      public void clear(String owner, String title) {
+        records.add("CLEAR " + title);
+      }
+
+      @Override
+      public void delete(String owner, String title) {
+        records.add("DELETE " + title);
+      }
+    };
+  }
+}
@@ -0,0 +1,120 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SessionManagerTest {
+
+  private static final List<String> VIDEO_IDS = List.of("amazing_cats_video_id", "another_cat_video_id",
+      "funny_dogs_video_id", "life_at_google_video_id", "nothing_video_id");
+
+  private VideoLibrary videoLibrary;
+  private SessionManager sessionManager;
+
+  @BeforeEach
+  public void setUp() {
+    videoLibrary = new VideoLibrary();
+    sessionManager = new SessionManager(videoLibrary, new PlaylistLibrary(videoLibrary), RandomPlayback.UNIFORM);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    sessionManager.close();
+  }
+
+  @Test
+  public void testSessionsKeepTheirOwnPlayback() {
+    int count = 10_000;
+    PlaybackEvents.Tail events = sessionManager.getEvents().tail();
+    List<List<Object>> outputs = new ArrayList<>();
+    List<CompletableFuture<Void>> done = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      List<Object> output = Collections.synchronizedList(new ArrayList<>());
+      outputs.add(output);
+      String sessionId = "session_" + i;
+      assertNotNull(sessionManager.open(sessionId, "owner_" + (i % 10), new OutputSink.Structured(output::add)));
+      done.add(sessionManager.execute(sessionId, List.of("PLAY", VIDEO_IDS.get(i % VIDEO_IDS.size()))));
+      if (i % 3 == 0) {
+        done.add(sessionManager.execute(sessionId, List.of("PAUSE")));
+      }
+      done.add(sessionManager.execute(sessionId, List.of("SHOW_PLAYING")));
+    }
+    CompletableFuture.allOf(done.toArray(new CompletableFuture[0])).join();
+
+    assertEquals(count, sessionManager.size());
+    for (int i = 0; i < count; i++) {
+      Video video = videoLibrary.getVideo(VIDEO_IDS.get(i % VIDEO_IDS.size()));
+      List<Object> output = outputs.get(i);
+      assertEquals("Playing video: " + video.getTitle(), output.get(0));
+      assertEquals("Currently playing: " + video.getDisplay() + (i % 3 == 0 ? " - PAUSED" : ""),
+          output.get(output.size() - 1));
+    }
+    int played = 0;
+    for (PlaybackEvent event = events.poll(); event != null; event = events.poll()) {
+      if (event.getKind() == PlaybackEvent.Kind.PLAYED) {
+        played++;
+      }
+    }
+    assertEquals(count, played);
+  }
+
+  @Test
+  public void testSessionsSeeTheirOwnersPlaylists() {
+    List<Object> first = new ArrayList<>();
+    List<Object> second = new ArrayList<>();
+    sessionManager.open("first", "alice", new OutputSink.Structured(first::add));
+    sessionManager.open("second", "bob", new OutputSink.Structured(second::add));
+    assertNull(sessionManager.open("first", "bob", OutputSink.NONE));
+
+    sessionManager.execute("first", List.of("CREATE_PLAYLIST", "mine"));
+    sessionManager.execute("first", List.of("SEARCH_VIDEOS", "cat"));
+    sessionManager.close("first").join();
+    sessionManager.execute("second", List.of("SHOW_ALL_PLAYLISTS")).join();
+
+    assertEquals("Successfully created new playlist: mine", first.get(0));
+    assertEquals("Here are the results for cat:", first.get(1));
+    assertEquals(List.of("No playlists exist yet"), second);
+    assertNull(sessionManager.execute("first", List.of("SHOW_ALL_PLAYLISTS")));
+  }
+
+  @Test
+  public void testFlaggedVideoStopsInEverySessionWatchingIt() {
+    List<Object> playing = new ArrayList<>();
+    List<Object> paused = new ArrayList<>();
+    List<Object> other = new ArrayList<>();
+    List<Object> flagger = new ArrayList<>();
+    sessionManager.open("playing", "alice", new OutputSink.Structured(playing::add));
+    sessionManager.open("paused", "bob", new OutputSink.Structured(paused::add));
+    sessionManager.open("other", "carol", new OutputSink.Structured(other::add));
+    sessionManager.open("flagger", "dave", new OutputSink.Structured(flagger::add));
+    sessionManager.execute("playing", List.of("PLAY", "amazing_cats_video_id"));
+    sessionManager.execute("paused", List.of("PLAY", "amazing_cats_video_id"));
+    sessionManager.execute("paused", List.of("PAUSE"));
+    sessionManager.execute("other", List.of("PLAY", "funny_dogs_video_id"));
+    for (String sessionId : List.of("playing", "paused", "other")) {
+      sessionManager.get(sessionId).idle().join();
+    }
+
+    sessionManager.execute("flagger", List.of("FLAG_VIDEO", "amazing_cats_video_id", "dont_like_cats")).join();
+    sessionManager.execute("playing", List.of("SHOW_PLAYING")).join();
+    sessionManager.execute("paused", List.of("SHOW_PLAYING")).join();
+    sessionManager.execute("other", List.of("SHOW_PLAYING")).join();
+
+    assertEquals(List.of("Playing video: Amazing Cats", "Stopping video: Amazing Cats",
+        "No video is currently playing"), playing);
+    assertEquals(List.of("Playing video: Amazing Cats", "Pausing video: Amazing Cats",
+        "Stopping video: Amazing Cats", "No video is currently playing"), paused);
+    assertEquals(List.of("Playing video: Funny Dogs",
+        "Currently playing: " + videoLibrary.getVideo("funny_dogs_video_id").getDisplay()), other);
+    assertEquals(List.of("Successfully flagged video: Amazing Cats (reason: dont_like_cats)"), flagger);
+  }
+}
@@ -0,0 +1,79 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class VideoCatalogTest {
+
+  @Test
+  public void testStoresRowsAndFindsThemById() {
+    VideoCatalog catalog = new VideoCatalog();
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, catalog.add("Video " + i, "video_" + i, List.of("#tag" + (i % 3), "#all")));
+    }
+
+    assertEquals(1000, catalog.size());
+    assertEquals(-1, catalog.ordinalOf("video_1000"));
+    int ordinal = catalog.ordinalOf("video_737");
+    assertEquals("Video 737", catalog.title(ordinal));
+    assertEquals("video_737", catalog.videoId(ordinal));
+    assertEquals(List.of("#tag2", "#all"), catalog.tags(ordinal));
+  }
+
+  @Test
+  public void testDuplicateIdReplacesRowAndKeepsOrdinal() {
+    VideoCatalog catalog = new VideoCatalog();
+    catalog.add("First", "same_id", List.of("#a"));
+    catalog.add("Other", "other_id", List.of());
+
+    assertEquals(0, catalog.add("Second", "same_id", List.of("#b", "#c")));
+    assertEquals(2, catalog.size());
+    assertEquals("Second", catalog.title(0));
+    assertEquals(List.of("#b", "#c"), catalog.tags(0));
+  }
+
+  @Test
+  public void testDisplayIsKeptUntilRowIsReplaced() {
+    VideoCatalog catalog = new VideoCatalog();
+    catalog.add("First", "same_id", List.of("#a", "#b"));
+    catalog.add("No Tags", "other_id", List.of());
+
+    String display = catalog.display(0);
+    assertEquals("First (same_id) [#a #b]", display);
+    assertSame(display, catalog.display(0));
+    assertEquals("No Tags (other_id) []", catalog.display(1));
+
+    catalog.add("Second", "same_id", List.of("#c"));
+    assertEquals("Second (same_id) [#c]", catalog.display(0));
+  }
+
+  @Test
+  public void testFlagsAndTitleOrder() {
+    VideoCatalog catalog = new VideoCatalog();
+    catalog.add("Beta", "b", List.of());
+    catalog.add("Alpha", "a", List.of());
+
+    FlagTable flags = catalog.flags();
+    flags.flag(0, "spam");
+    assertTrue(flags.isFlagged(0));
+    assertEquals("spam", flags.reason(0));
+    flags.allow(0);
+    assertFalse(flags.isFlagged(0));
+    assertNull(flags.reason(0));
+    flags.flag(1, null);
+    assertEquals(1, flags.count());
+    assertNull(flags.reason(1));
+    assertEquals(0, flags.nextUnflagged(0));
+    assertEquals(2, flags.nextUnflagged(1));
+
+    assertTrue(catalog.compareByTitle(1, 0) < 0);
+    assertTrue(catalog.compareByTitle(0, 1) > 0);
+    assertEquals(0, catalog.compareByTitle(1, 1));
+  }
+}
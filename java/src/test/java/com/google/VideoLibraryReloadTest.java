@@ -0,0 +1,168 @@
+package com.google;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class VideoLibraryReloadTest {
+
+  @TempDir
+  Path tempDir;
+
+  private Path source;
+  private VideoLibrary videoLibrary;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    System.setOut(new PrintStream(new ByteArrayOutputStream()));
+    source = tempDir.resolve("videos.txt");
+    write("Funny Dogs | funny_dogs_video_id |  #dog , #animal",
+        "Amazing Cats | amazing_cats_video_id |  #cat , #animal",
+        "Life at Google | life_at_google_video_id |  #google , #career");
+    videoLibrary = new VideoLibrary(source);
+  }
+
+  private void write(String... lines) throws IOException {
+    Files.write(source, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testReloadAppliesAddedChangedAndRemovedRows() throws IOException {
+    // build the indexes so the reload has to maintain them
+    videoLibrary.searchVideosByTitle("dog");
+    videoLibrary.searchVideosByTag("#cat");
+    videoLibrary.getVideosSortedByTitle().iterator().next();
+    videoLibrary.getRandomVideo();
+
+    write("Funny Dogs | funny_dogs_video_id |  #dog , #animal",
+        "Zany Cats | amazing_cats_video_id |  #cat",
+        "Brand New | brand_new_video_id |  #new");
+    CatalogDelta delta = videoLibrary.reload();
+
+    assertEquals(1, delta.addedRows().cardinality());
+    assertEquals(1, delta.changedRows().cardinality());
+    assertEquals(1, delta.removedOrdinals().cardinality());
+
+    assertNull(videoLibrary.getVideo("life_at_google_video_id"));
+    assertEquals("Zany Cats", videoLibrary.getVideo("amazing_cats_video_id").getTitle());
+    assertEquals(3, videoLibrary.getVideos().size());
+    assertEquals(List.of("Brand New", "Funny Dogs", "Zany Cats"), sortedTitles());
+    assertEquals(List.of("Zany Cats"), titles(videoLibrary.searchVideosByTitle("zany")));
+    assertTrue(videoLibrary.searchVideosByTitle("amazing").isEmpty());
+    assertTrue(videoLibrary.searchVideosByTitle("google").isEmpty());
+    assertEquals(List.of("Funny Dogs"), titles(videoLibrary.searchVideosByTag("#animal")));
+    assertEquals(List.of("Brand New", "Zany Cats"),
+        titles(videoLibrary.searchVideosByTags(List.of("NOT", "#dog"))));
+    Set<String> picked = new HashSet<>();
+    for (int i = 0; i < 200; i++) {
+      picked.add(videoLibrary.getRandomVideo().getTitle());
+    }
+    assertEquals(Set.of("Brand New", "Funny Dogs", "Zany Cats"), picked);
+  }
+
+  @Test
+  public void testReloadKeepsFlagsAndOrdinals() throws IOException {
+    int ordinal = videoLibrary.getVideo("amazing_cats_video_id").getOrdinal();
+    videoLibrary.flagVideo("amazing_cats_video_id", "dont_like_cats");
+
+    write("Amazing Cats | amazing_cats_video_id |  #cat , #animal , #cute",
+        "Funny Dogs | funny_dogs_video_id |  #dog , #animal");
+    videoLibrary.reload();
+
+    Video video = videoLibrary.getVideo("amazing_cats_video_id");
+    assertEquals(ordinal, video.getOrdinal());
+    assertTrue(video.getFlagged());
+    assertEquals("dont_like_cats", video.getFlaggedReason());
+    assertEquals(List.of("#cat", "#animal", "#cute"), video.getTags());
+  }
+
+  @Test
+  public void testReloadingAChangedRowKeepsTheArenasBounded() throws IOException {
+    write("Funny Dogs with a title long enough to move it to the end of the arena | funny_dogs_video_id"
+        + " | #dog , #animal , #funny , #pets");
+    videoLibrary.reload();
+    int size = videoLibrary.getArenaSize();
+
+    for (int i = 0; i < 1_000; i++) {
+      // a longer title and more tags don't fit the row's old slices, a shorter one does
+      write(i % 2 == 0 ? "Funny Dogs | funny_dogs_video_id | #dog"
+          : "Funny Dogs with a title long enough to move it to the end of the arena, take " + i
+              + " | funny_dogs_video_id | #dog , #animal , #funny , #pets");
+      videoLibrary.reload();
+      assertTrue(videoLibrary.getArenaSize() <= 3 * size, "arena size " + videoLibrary.getArenaSize());
+    }
+    assertEquals("Funny Dogs with a title long enough to move it to the end of the arena, take 999",
+        videoLibrary.getVideo("funny_dogs_video_id").getTitle());
+    assertEquals(List.of("#dog", "#animal", "#funny", "#pets"), videoLibrary.getVideo("funny_dogs_video_id").getTags());
+  }
+
+  @Test
+  public void testUnchangedFileIsANoOp() throws IOException {
+    assertTrue(videoLibrary.reload().isEmpty());
+  }
+
+  @Test
+  public void testWatcherReloadsOnChange() throws Exception {
+    try (CatalogWatcher watcher = videoLibrary.watch()) {
+      write("Brand New | brand_new_video_id |  #new");
+
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (videoLibrary.getVideo("brand_new_video_id") == null && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+    }
+
+    assertNotNull(videoLibrary.getVideo("brand_new_video_id"));
+    assertEquals(1, videoLibrary.getVideos().size());
+  }
+
+  @Test
+  public void testPlaylistKeepsVideoMissingFromCatalogUntilItReturns() throws IOException {
+    Path log = tempDir.resolve("playlists.log");
+    PlaylistLibrary playlistLibrary = new PlaylistLibrary(videoLibrary, log);
+    playlistLibrary.createPlayList("keep");
+    playlistLibrary.addVideoToPlayList("keep", videoLibrary.getVideo("life_at_google_video_id"));
+    playlistLibrary.close();
+
+    // restart with a catalog that no longer has the video
+    write("Funny Dogs | funny_dogs_video_id |  #dog , #animal");
+    VideoLibrary restarted = new VideoLibrary(source);
+    PlaylistLibrary recovered = new PlaylistLibrary(restarted, log);
+    int ordinal = recovered.getVideoPlayList("keep").getVideos().get(0);
+    assertNull(restarted.getVideo(ordinal));
+    assertEquals("life_at_google_video_id", restarted.videoIdAt(ordinal));
+
+    write("Funny Dogs | funny_dogs_video_id |  #dog , #animal",
+        "Life at Google | life_at_google_video_id |  #google , #career");
+    restarted.reload();
+    assertEquals("Life at Google", restarted.getVideo(ordinal).getTitle());
+    assertEquals(1, recovered.getVideoPlayListsContaining("life_at_google_video_id").size());
+    recovered.close();
+  }
+
+  private List<String> sortedTitles() {
+    List<String> titles = new ArrayList<>();
+    videoLibrary.getVideosSortedByTitle().forEach(video -> titles.add(video.getTitle()));
+    return titles;
+  }
+
+  private static List<String> titles(List<Video> videos) {
+    return videos.stream().map(Video::getTitle).collect(Collectors.toList());
+  }
+}
@@ -1,11 +1,18 @@
 package com.google;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -42,4 +49,104 @@ public class VideoLibraryTest {
     assertEquals("nothing_video_id", video.getVideoId());
     assertTrue(video.getTags().isEmpty());
   }
+
+  @Test
+  public void testSearchByTitleMatchesSubstringsCaseInsensitively() {
+    var videos = videoLibrary.searchVideosByTitle("AT VID");
+
+    assertEquals(1, videos.size());
+    assertEquals("another_cat_video_id", videos.get(0).getVideoId());
+  }
+
+  @Test
+  public void testSearchByTitleSortsAndExcludesFlagged() {
+    videoLibrary.flagVideo("amazing_cats_video_id", "dont_like_cats");
+    var videos = videoLibrary.searchVideosByTitle("a");
+
+    assertEquals(List.of("Another Cat Video", "Life at Google", "Video about nothing"),
+        videos.stream().map(Video::getTitle).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testSearchByTitleWithoutMatches() {
+    assertTrue(videoLibrary.searchVideosByTitle("blah").isEmpty());
+    assertTrue(videoLibrary.searchVideosByTitle("zz").isEmpty());
+  }
+
+  @Test
+  public void testSearchByTagsCombinesOperators() {
+    assertEquals(List.of("Amazing Cats", "Another Cat Video"),
+        titles(videoLibrary.searchVideosByTags(List.of("#CAT", "AND", "#animal"))));
+    assertEquals(List.of("Amazing Cats", "Another Cat Video", "Funny Dogs"),
+        titles(videoLibrary.searchVideosByTags(List.of("#cat", "OR", "#dog"))));
+    assertEquals(List.of("Funny Dogs"),
+        titles(videoLibrary.searchVideosByTags(List.of("#animal", "NOT", "#cat"))));
+    assertEquals(List.of("Life at Google", "Video about nothing"),
+        titles(videoLibrary.searchVideosByTags(List.of("NOT", "#animal"))));
+  }
+
+  @Test
+  public void testSearchByTagsExcludesFlagged() {
+    videoLibrary.flagVideo("amazing_cats_video_id", "dont_like_cats");
+
+    assertEquals(List.of("Another Cat Video"), titles(videoLibrary.searchVideosByTag("#cat")));
+  }
+
+  @Test
+  public void testVideosSortedByTitle() {
+    videoLibrary.flagVideo("funny_dogs_video_id", "dont_like_dogs");
+    List<String> titles = new ArrayList<>();
+    videoLibrary.getVideosSortedByTitle().forEach(video -> titles.add(video.getTitle()));
+
+    assertEquals(List.of("Amazing Cats", "Another Cat Video", "Funny Dogs", "Life at Google",
+        "Video about nothing"), titles);
+  }
+
+  @Test
+  public void testRandomVideoSkipsFlaggedAndRepeatsWithSeed() {
+    videoLibrary.flagVideo("funny_dogs_video_id", "dont_like_dogs");
+    videoLibrary.getRandomVideo();
+    videoLibrary.flagVideo("amazing_cats_video_id", "dont_like_cats");
+    videoLibrary.allowVideo("funny_dogs_video_id");
+
+    RandomPlayback first = new RandomPlayback(new Random(42), Map.of());
+    RandomPlayback second = new RandomPlayback(new Random(42), Map.of());
+    Set<String> picked = new HashSet<>();
+    for (int i = 0; i < 200; i++) {
+      String videoId = videoLibrary.getRandomVideo(first).getVideoId();
+      assertEquals(videoId, videoLibrary.getRandomVideo(second).getVideoId());
+      picked.add(videoId);
+    }
+    assertEquals(Set.of("funny_dogs_video_id", "another_cat_video_id", "life_at_google_video_id",
+        "nothing_video_id"), picked);
+
+    for (Video video : videoLibrary.getVideos()) {
+      videoLibrary.flagVideo(video.getVideoId(), null);
+    }
+    assertNull(videoLibrary.getRandomVideo());
+  }
+
+  @Test
+  public void testWeightedRandomVideoFollowsTagWeights() {
+    RandomPlayback playback = new RandomPlayback(new Random(7), Map.of("#CAT", 0.0, "#google", 50.0));
+    int google = 0;
+    for (int i = 0; i < 1000; i++) {
+      String videoId = videoLibrary.getRandomVideo(playback).getVideoId();
+      assertFalse(videoId.contains("cat"), videoId);
+      if (videoId.equals("life_at_google_video_id")) {
+        google++;
+      }
+    }
+    // google weighs 50 against 1 for each of the two other videos that can be picked
+    assertTrue(google > 900, String.valueOf(google));
+
+    videoLibrary.flagVideo("funny_dogs_video_id", null);
+    videoLibrary.flagVideo("life_at_google_video_id", null);
+    videoLibrary.flagVideo("nothing_video_id", null);
+    assertNull(videoLibrary.getRandomVideo(playback));
+  }
+
+  private static List<String> titles(List<Video> videos) {
+    return videos.stream().map(Video::getTitle).collect(Collectors.toList());
+  }
 }